@@ -2,8 +2,10 @@ package study.querydsl;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
 
-@SpringBootApplication
+// R2DBC ConnectionFactory 빈이 생기면 JDBC DataSource 자동설정이 빠지므로, R2DBC 는 ReactiveMemberRepository 안에서만 만든다.
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
 public class QuerydslApplication {
 
 	public static void main(String[] args) {
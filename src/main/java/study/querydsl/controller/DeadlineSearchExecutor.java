@@ -0,0 +1,103 @@
+package study.querydsl.controller;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.DeferredResultProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+
+import study.querydsl.repository.QueryDeadline;
+
+/**
+ * X-Request-Timeout 요청의 검색을 요청 스레드 밖에서 실행한다.
+ * 애플리케이션 TaskExecutor 와 나눠 쓰지 않도록 전용 스레드를 두고, 밀리면 RejectedExecutionException 으로 바로 거절한다.
+ *
+ * 요청의 비동기 처리가 어떤 이유로든 끝나면(완료, 타임아웃, 오류, 컨테이너가 끊긴 연결을 닫음)
+ * AsyncListener 로 deadline 을 취소해 DB 에서 실행 중인 쿼리를 멈춘다.
+ */
+@Component
+public class DeadlineSearchExecutor {
+
+	private final ThreadPoolExecutor executor;
+
+	public DeadlineSearchExecutor(@Value("${querydsl.deadline-search.threads:16}") int threads,
+			@Value("${querydsl.deadline-search.queue-capacity:100}") int queueCapacity) {
+		this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), r -> {
+					Thread thread = new Thread(r, "deadline-search");
+					thread.setDaemon(true);
+					return thread;
+				}, new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	public <T> DeferredResult<T> submit(WebRequest request, QueryDeadline deadline, long timeoutMillis, Supplier<T> search) {
+		// 정상적이면 쿼리 쪽 타이머가 먼저 끝난다. 비동기 타임아웃은 그 뒤의 안전장치.
+		DeferredResult<T> result = new DeferredResult<>(timeoutMillis + 1000);
+		result.onTimeout(deadline::cancel);
+
+		// AsyncContext 는 핸들러가 반환된 뒤에 만들어지므로 preProcess 에서 listener 를 단다.
+		WebAsyncUtils.getAsyncManager(request).registerDeferredResultInterceptor(deadline, new DeferredResultProcessingInterceptor() {
+			@Override
+			public <R> void preProcess(NativeWebRequest webRequest, DeferredResult<R> deferredResult) {
+				webRequest.getNativeRequest(HttpServletRequest.class).getAsyncContext().addListener(new CancellingListener(deadline));
+			}
+		});
+
+		executor.execute(() -> {
+			try {
+				result.setResult(search.get());
+			} catch (RuntimeException e) {
+				result.setErrorResult(e);
+			}
+		});
+		return result;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private static class CancellingListener implements AsyncListener {
+
+		private final QueryDeadline deadline;
+
+		CancellingListener(QueryDeadline deadline) {
+			this.deadline = deadline;
+		}
+
+		// 결과를 쓴 뒤의 완료라면 실행 중인 쿼리가 없으므로 아무 일도 하지 않는다.
+		@Override
+		public void onComplete(AsyncEvent event) {
+			deadline.cancel();
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) {
+			deadline.cancel();
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+			deadline.cancel();
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+		}
+
+	}
+
+}
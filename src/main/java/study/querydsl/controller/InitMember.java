@@ -4,7 +4,12 @@ import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -18,10 +23,27 @@ import study.querydsl.entity.Team;
 public class InitMember {
 
 	private final InitMemberService initMemberService;
+	private final TaskExecutor taskExecutor;
+	private final Environment environment;
 	
 	@PostConstruct
 	public void init() {
-		initMemberService.init();
+		if (!deferred()) {
+			initMemberService.init();
+		}
+	}
+	
+	// faststart : 기동 경로를 막지 않도록 기동 완료 후 백그라운드에서 적재한다.
+	// 이 경우 readiness 가 열린 뒤에 데이터가 생기므로 warm-up, 스냅샷 복원과 함께 쓰지 않는다.
+	@EventListener(ApplicationReadyEvent.class)
+	public void initDeferred() {
+		if (deferred()) {
+			taskExecutor.execute(initMemberService::init);
+		}
+	}
+	
+	private boolean deferred() {
+		return environment.acceptsProfiles(Profiles.of("faststart"));
 	}
 	
 	@Component
@@ -1,24 +1,177 @@
 package study.querydsl.controller;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import study.querydsl.dto.MemberChangesDto;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.MemberTeamPage;
+import study.querydsl.jdbc.MemberDataVersion;
+import study.querydsl.jfr.MemberRequestEvent;
+import study.querydsl.repository.AdaptiveMemberSearch;
+import study.querydsl.repository.MemberChangesRepository;
 import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.QueryDeadline;
+import study.querydsl.repository.ReactiveMemberRepository;
+import study.querydsl.repository.sql.MemberSqlRepository;
 
 @RestController
 @RequiredArgsConstructor
 public class MemberController {
 	
+	public static final String REQUEST_TIMEOUT_HEADER = "X-Request-Timeout";
+	public static final int MAX_BATCH_CONDITIONS = 100;
+	
 	private final MemberJpaRepository memberJpaRepository;
+	private final MemberChangesRepository memberChangesRepository;
+	private final MemberSqlRepository memberSqlRepository;
+	private final MemberDataVersion memberDataVersion;
+	private final ReactiveMemberRepository reactiveMemberRepository;
+	private final DeadlineSearchExecutor deadlineSearchExecutor;
+	private final AdaptiveMemberSearch adaptiveMemberSearch;
+	private final ObjectMapper objectMapper;
 	
 	@GetMapping("/v1/members")
-	public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition){
-		return memberJpaRepository.search(condition);
+	public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition, WebRequest request){
+		if (notModified(condition, request)) {
+			return null;
+		}
+		MemberRequestEvent.begin("GET /v1/members", condition.shape());
+		return MemberRequestEvent.rows(adaptiveMemberSearch.search(condition));
+	}
+	
+	/**
+	 * X-Request-Timeout(ms) 를 준 요청 : 검색을 요청 스레드 밖(DeadlineSearchExecutor)에서 실행하고,
+	 * 마감 시각이 지나거나 클라이언트 연결이 끊기면 DB 에서 실행 중인 쿼리를 취소한다.
+	 * 실행 방식(AdaptiveMemberSearch)과 JFR 기록은 헤더 없는 요청과 같다.
+	 */
+	@GetMapping(value = "/v1/members", headers = REQUEST_TIMEOUT_HEADER)
+	public DeferredResult<List<MemberTeamDto>> searchMemberV1WithDeadline(MemberSearchCondition condition, WebRequest request,
+			@RequestHeader(REQUEST_TIMEOUT_HEADER) long timeoutMillis){
+		if (notModified(condition, request)) {
+			return null;
+		}
+		
+		QueryDeadline deadline = QueryDeadline.after(timeoutMillis);
+		return deadlineSearchExecutor.submit(request, deadline, timeoutMillis, () -> MemberRequestEvent.record(
+				"GET /v1/members", condition.shape(), () -> adaptiveMemberSearch.search(condition, deadline), List::size));
+	}
+	
+	// 데이터 버전이 그대로면 쿼리, 직렬화 없이 304 (인스턴스가 하나일 때만, MemberDataVersion 참고)
+	private boolean notModified(MemberSearchCondition condition, WebRequest request) {
+		String etag = memberDataVersion.etag(condition);
+		return etag != null && request.checkNotModified(etag);
+	}
+	
+	/**
+	 * 주기적으로 전체 목록을 다시 받는 대신 since(이전 응답의 token) 이후 바뀐 회원만 받는다.
+	 * since 없이 호출하면 전체와 함께 첫 token 을 준다.
+	 */
+	@GetMapping("/v1/members/changes")
+	public MemberChangesDto changesV1(MemberSearchCondition condition, @RequestParam(required = false) Long since){
+		MemberRequestEvent.begin("GET /v1/members/changes", condition.shape());
+		MemberChangesDto changes = memberChangesRepository.changesSince(condition, since);
+		return MemberRequestEvent.rows(changes, changes.getUpserts().size() + changes.getRemoved().size());
+	}
+	
+	/**
+	 * 조건 여러 개를 한 번의 요청, 한 번의 쿼리(UNION ALL)로 검색한다. 응답은 요청한 조건 순서대로의 결과 목록.
+	 * null 이거나 아무 값도 없는 조건이 있으면 400
+	 */
+	@PostMapping("/v1/members/search:batch")
+	public List<List<MemberTeamDto>> searchMemberBatchV1(@RequestBody List<MemberSearchCondition> conditions){
+		if (conditions.size() > MAX_BATCH_CONDITIONS) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "too many conditions: max " + MAX_BATCH_CONDITIONS);
+		}
+		MemberRequestEvent.begin("POST /v1/members/search:batch", "batch");
+		List<List<MemberTeamDto>> results;
+		try {
+			results = memberSqlRepository.searchBatch(conditions);
+		} catch (IllegalArgumentException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+		}
+		return MemberRequestEvent.rows(results, results.stream().mapToInt(List::size).sum());
+	}
+	
+	// approximateTotal=true : 조건 없는 전체 조회는 count(*) 대신 테이블 통계로 전체 건수를 추정한다. (응답의 totalApproximate)
+	// sort=age,desc 처럼 MemberTeamDto 속성으로 정렬한다. 정렬할 수 없는 속성이면 400
+	@GetMapping("/v2/members")
+	public MemberTeamPage searchMemberV2(MemberSearchCondition condition, Pageable pageable,
+			@RequestParam(defaultValue = "false") boolean approximateTotal){
+		MemberRequestEvent.begin("GET /v2/members", condition.shape());
+		MemberTeamPage page;
+		try {
+			page = memberJpaRepository.searchPage(condition, pageable, approximateTotal);
+		} catch (IllegalArgumentException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+		}
+		return MemberRequestEvent.rows(page, page.getNumberOfElements());
+	}
+	
+	/**
+	 * /v1/members 와 같은 결과를 JSON 배열로 쓴다.
+	 * 결과가 아주 큰 조건은 목록을 만들지 않고 읽는 대로 쓴다. (AdaptiveMemberSearch.Strategy.STREAMING)
+	 */
+	@GetMapping("/v3/members")
+	public ResponseEntity<StreamingResponseBody> searchMemberV3(MemberSearchCondition condition){
+		StreamingResponseBody body = out -> {
+			try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+				generator.writeStartArray();
+				adaptiveMemberSearch.search(condition, dto -> {
+					try {
+						generator.writeObject(dto);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+				generator.writeEndArray();
+			}
+		};
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+	}
+	
+	@ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
+	@ExceptionHandler(QueryTimeoutException.class)
+	public void deadlineExceeded() {
+	}
+	
+	// deadline 검색 스레드와 대기열이 모두 찼을 때
+	@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+	@ExceptionHandler(RejectedExecutionException.class)
+	public void searchRejected() {
+	}
+	
+	// 요청 스레드를 점유하지 않고, 클라이언트가 읽는 속도에 맞춰 한 줄(JSON)씩 내려준다.
+	@GetMapping(value = "/v1/members/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public Flux<MemberTeamDto> streamMemberV1(MemberSearchCondition condition){
+		return reactiveMemberRepository.search(condition);
 	}
 	
 }
@@ -0,0 +1,24 @@
+package study.querydsl.controller;
+
+import java.util.List;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import lombok.RequiredArgsConstructor;
+import study.querydsl.dto.SlowQueryDto;
+import study.querydsl.jdbc.SlowQueryLog;
+
+@RestController
+@RequiredArgsConstructor
+public class SlowQueryController {
+
+	private final SlowQueryLog slowQueryLog;
+	
+	// 바인딩 값은 담지 않는다. (sql 은 ? 자리표시자 그대로)
+	@GetMapping("/internal/slow-queries")
+	public List<SlowQueryDto> slowQueries() {
+		return slowQueryLog.getEntries();
+	}
+	
+}
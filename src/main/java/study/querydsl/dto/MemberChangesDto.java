@@ -0,0 +1,21 @@
+package study.querydsl.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * token 을 다음 요청의 since 로 넘기면 그 이후의 변경분만 받는다.
+ * upserts : 조건에 맞는 새로 생기거나 바뀐 회원. 받은 쪽은 memberId 기준으로 덮어쓴다.
+ * removed : 삭제되었거나, 바뀐 결과 더 이상 조건에 맞지 않는 회원의 id.
+ */
+@Data
+@AllArgsConstructor
+public class MemberChangesDto {
+
+	private long token;
+	private List<MemberTeamDto> upserts;
+	private List<Long> removed;
+
+}
@@ -1,5 +1,9 @@
 package study.querydsl.dto;
 
+import java.util.StringJoiner;
+
+import org.springframework.util.StringUtils;
+
 import lombok.Data;
 
 @Data
@@ -11,4 +15,36 @@ public class MemberSearchCondition {
 	private Integer ageGoe;
 	private Integer ageLoe;
 	
+	// 조건 없이 전체 조회
+	public boolean isEmpty() {
+		return !StringUtils.hasText(username) && !StringUtils.hasText(teamName) && ageGoe == null && ageLoe == null;
+	}
+	
+	// 값이 아닌 조건 조합. 예) username+ageGoe (study.querydsl.jfr)
+	public String shape() {
+		StringJoiner shape = new StringJoiner("+");
+		shape.setEmptyValue("none");
+		if (StringUtils.hasText(username)) {
+			shape.add("username");
+		}
+		if (StringUtils.hasText(teamName)) {
+			shape.add("teamName");
+		}
+		if (ageGoe != null) {
+			shape.add("ageGoe");
+		}
+		if (ageLoe != null) {
+			shape.add("ageLoe");
+		}
+		return shape.toString();
+	}
+	
+	// search 의 where 절과 같은 판정을 조회된 행에 대해 한다.
+	public boolean matches(MemberTeamDto dto) {
+		return (!StringUtils.hasText(username) || username.equals(dto.getUsername()))
+				&& (!StringUtils.hasText(teamName) || teamName.equals(dto.getTeamName()))
+				&& (ageGoe == null || dto.getAge() >= ageGoe)
+				&& (ageLoe == null || dto.getAge() <= ageLoe);
+	}
+	
 }
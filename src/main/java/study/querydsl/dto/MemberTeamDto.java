@@ -2,19 +2,28 @@ package study.querydsl.dto;
 
 import com.querydsl.core.annotations.QueryProjection;
 
-import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 
-@Data
+/**
+ * 검색 결과 한 행. 결과가 수십만 건씩 쌓일 수 있으므로 불변에 memberId 는 primitive 로 둔다.
+ * (teamId 는 팀 없는 회원이 있어 null 이 가능하다)
+ * teamId, teamName 은 MemberTeamProjection 으로 만들면 쿼리 결과 안에서 인스턴스가 공유된다.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
 public class MemberTeamDto {
 
-	private Long memberId;
-	private String username;
-	private int age;
-	private Long teamId;
-	private String teamName;
+	private final long memberId;
+	private final String username;
+	private final int age;
+	private final Long teamId;
+	private final String teamName;
 
 	@QueryProjection
-	public MemberTeamDto(Long memberId, String username, int age, Long teamId, String teamName) {
+	public MemberTeamDto(long memberId, String username, int age, Long teamId, String teamName) {
 		this.memberId = memberId;
 		this.username = username;
 		this.age = age;
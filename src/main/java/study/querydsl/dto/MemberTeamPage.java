@@ -0,0 +1,25 @@
+package study.querydsl.dto;
+
+import java.util.List;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import lombok.Getter;
+
+/**
+ * totalApproximate 가 true 면 totalElements 는 count(*) 가 아닌 테이블 통계로 구한 추정값이다.
+ */
+@Getter
+public class MemberTeamPage extends PageImpl<MemberTeamDto> {
+
+	private static final long serialVersionUID = 1L;
+	
+	private final boolean totalApproximate;
+
+	public MemberTeamPage(List<MemberTeamDto> content, Pageable pageable, long total, boolean totalApproximate) {
+		super(content, pageable, total);
+		this.totalApproximate = totalApproximate;
+	}
+	
+}
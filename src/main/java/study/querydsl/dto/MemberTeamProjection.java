@@ -0,0 +1,58 @@
+package study.querydsl.dto;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpressionBase;
+import com.querydsl.core.types.Visitor;
+
+/**
+ * QMemberTeamDto 대신 쓰는 projection. teamId, teamName 을 쿼리 결과 안에서 하나의 인스턴스로 공유한다.
+ *
+ * JDBC 는 행마다 새 String, Long 을 만들어 주므로 조건 없는 검색이면 같은 팀 이름이 행 수만큼 복제된다.
+ * 처음 본 값을 맵에 기억해 두고 같은 값이면 그 인스턴스를 넣으므로 팀 수만큼만 남는다.
+ * 맵은 이 인스턴스(쿼리 하나)에만 묶여 결과와 함께 버려진다. 쿼리마다 새로 만들어 쓴다. (스레드 간 공유 금지)
+ */
+public class MemberTeamProjection extends FactoryExpressionBase<MemberTeamDto> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final List<Expression<?>> args;
+	private final Map<Object, Object> canonical = new HashMap<>();
+
+	public MemberTeamProjection(Expression<Long> memberId, Expression<String> username, Expression<Integer> age,
+			Expression<Long> teamId, Expression<String> teamName) {
+		super(MemberTeamDto.class);
+		this.args = Collections.unmodifiableList(Arrays.asList(memberId, username, age, teamId, teamName));
+	}
+
+	@Override
+	public List<Expression<?>> getArgs() {
+		return args;
+	}
+
+	@Override
+	public MemberTeamDto newInstance(Object... row) {
+		return new MemberTeamDto(
+				(Long) row[0],
+				(String) row[1],
+				(Integer) row[2],
+				canonical((Long) row[3]),
+				canonical((String) row[4]));
+	}
+
+	@Override
+	public <R, C> R accept(Visitor<R, C> v, C context) {
+		return v.visit(this, context);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T canonical(T value) {
+		return value == null ? null : (T) canonical.computeIfAbsent(value, v -> v);
+	}
+
+}
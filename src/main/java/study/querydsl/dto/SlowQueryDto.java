@@ -0,0 +1,22 @@
+package study.querydsl.dto;
+
+import java.time.LocalDateTime;
+
+import lombok.Data;
+
+@Data
+public class SlowQueryDto {
+
+	private LocalDateTime capturedAt;
+	private long elapsedMillis;
+	private String sql;
+	private String plan;
+
+	public SlowQueryDto(LocalDateTime capturedAt, long elapsedMillis, String sql, String plan) {
+		this.capturedAt = capturedAt;
+		this.elapsedMillis = elapsedMillis;
+		this.sql = sql;
+		this.plan = plan;
+	}
+	
+}
@@ -0,0 +1,76 @@
+package study.querydsl.entity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import org.hibernate.boot.MetadataBuilder;
+import org.hibernate.boot.model.relational.AuxiliaryDatabaseObject;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.jpa.boot.spi.MetadataBuilderContributor;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.StreamUtils;
+
+/**
+ * 변경분 조회(MemberChangesRepository)를 위한 스키마 객체.
+ *
+ * updated_at : insert 는 default, update 는 H2 의 ON UPDATE 로 DB 가 채운다.
+ *   JPA flush 든 벌크 update 든 querydsl-sql update 든 같은 규칙이 적용된다.
+ *   CURRENT_TIMESTAMP 는 트랜잭션 시작 시각이다.
+ * member 삭제 : AFTER DELETE 트리거가 member_tombstone 에 남긴다. (db/member-tombstone-trigger.sql)
+ *   트리거는 Java 소스로 정의되어 H2 서버가 컴파일하므로 서버가 JDK 에서 떠 있어야 한다.
+ *
+ * spring.jpa.properties.hibernate.metadata_builder_contributor 로 등록되어
+ * ddl-auto 로 테이블을 만들 때 트리거도 함께 만든다.
+ */
+public class ChangeTracking implements MetadataBuilderContributor {
+
+	public static final String UPDATED_AT = "timestamp with time zone default current_timestamp on update current_timestamp";
+
+	@Override
+	public void contribute(MetadataBuilder metadataBuilder) {
+		metadataBuilder.applyAuxiliaryDatabaseObject(new TombstoneTrigger());
+	}
+
+	static class TombstoneTrigger implements AuxiliaryDatabaseObject {
+
+		private static final long serialVersionUID = 1L;
+
+		private static final String NAME = "member_tombstone_trigger";
+		private static final String SOURCE = "db/member-tombstone-trigger.sql";
+
+		@Override
+		public String getExportIdentifier() {
+			return NAME;
+		}
+
+		@Override
+		public boolean appliesToDialect(Dialect dialect) {
+			return dialect instanceof H2Dialect;
+		}
+
+		// member, member_tombstone 테이블이 있어야 한다.
+		@Override
+		public boolean beforeTablesOnCreation() {
+			return false;
+		}
+
+		@Override
+		public String[] sqlCreateStrings(Dialect dialect) {
+			try (InputStream in = new ClassPathResource(SOURCE).getInputStream()) {
+				return new String[] { StreamUtils.copyToString(in, StandardCharsets.UTF_8) };
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public String[] sqlDropStrings(Dialect dialect) {
+			return new String[] { "drop trigger if exists " + NAME };
+		}
+
+	}
+
+}
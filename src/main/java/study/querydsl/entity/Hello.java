@@ -2,8 +2,13 @@ package study.querydsl.entity;
 
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
 
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
 import lombok.Getter;
 import lombok.Setter;
 
@@ -11,7 +16,10 @@ import lombok.Setter;
 @Getter @Setter
 public class Hello {
 	
-	@Id @GeneratedValue
+	@Id
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "hello_seq")
+	@GenericGenerator(name = "hello_seq", strategy = "study.querydsl.entity.PooledSequenceGenerator",
+			parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "hello_seq"))
 	private Long id;
 	
 }
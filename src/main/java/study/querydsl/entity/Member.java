@@ -1,12 +1,26 @@
 package study.querydsl.entity;
 
+import java.time.Instant;
+
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.Table;
+
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import lombok.AccessLevel;
 import lombok.Getter;
@@ -15,12 +29,18 @@ import lombok.Setter;
 import lombok.ToString;
 
 @Entity
+@NamedEntityGraph(name = "Member.team", attributeNodes = @NamedAttributeNode("team"))
+@Table(indexes = @Index(name = "idx_member_updated_at", columnList = "updated_at"))
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "username", "age"})
 public class Member {
 
-	@Id @GeneratedValue 
+	@Id
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq")
+	@GenericGenerator(name = "member_seq", strategy = "study.querydsl.entity.PooledSequenceGenerator",
+			parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "member_seq"))
 	@Column(name = "member_id")
 	private Long id;
 	
@@ -31,6 +51,15 @@ public class Member {
 	@JoinColumn(name = "team_id")
 	private Team team;
 	
+	// team.name 의 복제. 검색이 team 을 조인하지 않고 member 만 읽을 수 있게 한다.
+	// changeTeam, MemberRepository.reassignTeam / renameTeam 이 함께 갱신한다. (어긋난 값은 TeamNameConsistency 가 찾아 고친다)
+	@Column(name = "team_name")
+	private String teamName;
+	
+	// 벌크 update 까지 포함해 DB 가 직접 갱신한다. (변경분 조회, MemberChangesRepository)
+	@Column(name = "updated_at", insertable = false, updatable = false, columnDefinition = ChangeTracking.UPDATED_AT)
+	private Instant updatedAt;
+	
 	// constructor1
 	public Member(String username) {
 		this(username, 0);
@@ -52,9 +81,17 @@ public class Member {
 		}
 	}
 
+	// team.members 가 로딩되지 않았으면 초기화하지 않는다. (팀 인원수와 무관하게 일정한 비용)
+	// teamName 을 복제하므로 팀 프록시는 초기화된다. (팀 한 건 조회)
 	public void changeTeam(Team team) {
+		if (this.team != null && Hibernate.isInitialized(this.team)) {
+			this.team.removeMember(this);
+		}
 		this.team = team;
-		team.getMembers().add(this);
+		this.teamName = team.getName();
+		if (Hibernate.isInitialized(team)) {
+			team.addMember(this);
+		}
 	}
 		
 }
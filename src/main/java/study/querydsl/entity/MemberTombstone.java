@@ -0,0 +1,36 @@
+package study.querydsl.entity;
+
+import java.time.Instant;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * 삭제된 member. member 의 AFTER DELETE 트리거가 채운다. (ChangeTracking)
+ */
+@Entity
+@Table(indexes = @Index(name = "idx_member_tombstone_deleted_at", columnList = "deleted_at"))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+public class MemberTombstone {
+
+	@Id
+	@Column(name = "member_id")
+	private Long memberId;
+
+	@Column(name = "team_id")
+	private Long teamId;
+
+	@Column(name = "deleted_at", columnDefinition = "timestamp with time zone")
+	private Instant deletedAt;
+
+}
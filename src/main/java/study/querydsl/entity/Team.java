@@ -1,13 +1,22 @@
 package study.querydsl.entity;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.OneToMany;
+import javax.persistence.Table;
+
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import lombok.AccessLevel;
 import lombok.Getter;
@@ -16,16 +25,27 @@ import lombok.Setter;
 import lombok.ToString;
 
 @Entity
+@Table(indexes = @Index(name = "idx_team_updated_at", columnList = "updated_at"))
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "name"})
 public class Team {
 
-	@Id @GeneratedValue
+	@Id
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "team_seq")
+	@GenericGenerator(name = "team_seq", strategy = "study.querydsl.entity.PooledSequenceGenerator",
+			parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "team_seq"))
 	@Column(name = "team_id")
 	private Long id;
+	
+	// member.team_name 과 함께 바꿔야 하므로 이름 변경은 MemberRepository.renameTeam 으로만 한다.
+	@Setter(AccessLevel.NONE)
 	private String name;
 	
+	// 팀 이름이 바뀌면 소속 회원 전체가 변경분에 포함된다.
+	@Column(name = "updated_at", insertable = false, updatable = false, columnDefinition = ChangeTracking.UPDATED_AT)
+	private Instant updatedAt;
+	
 	@OneToMany(mappedBy="team")
 	private List<Member> members = new ArrayList<>();
 	
@@ -33,4 +53,20 @@ public class Team {
 		this.name = name;
 	}
 	
+	/**
+	 * 연관관계의 주인은 Member.team 이므로 members 는 이미 로딩된 경우에만 맞춰준다.
+	 * 로딩 전이라면 나중에 로딩될 때 DB 기준으로 채워진다.
+	 */
+	void addMember(Member member) {
+		if (Hibernate.isInitialized(members)) {
+			members.add(member);
+		}
+	}
+	
+	void removeMember(Member member) {
+		if (Hibernate.isInitialized(members)) {
+			members.remove(member);
+		}
+	}
+	
 }
@@ -0,0 +1,47 @@
+package study.querydsl.jdbc;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import study.querydsl.dto.MemberSearchCondition;
+
+/**
+ * member / team 테이블의 데이터 버전.
+ * 쓰기가 일어날 때마다 올라가며(MemberDataVersionListener), 조회 응답의 ETag 로 사용한다.
+ * 재시작 후 같은 값이 다시 나오지 않도록 기동 시각을 앞에 붙인다.
+ *
+ * 이 프로세스의 p6spy datasource 를 지난 쓰기만 센다. 다른 인스턴스, 샤드 datasource, R2DBC 의 쓰기는 보지 못하고
+ * 인스턴스마다 값이 다르므로 인스턴스가 하나일 때만 ETag 로 쓸 수 있다. (querydsl.etag.enabled, 여러 대면 false)
+ */
+@Component
+public class MemberDataVersion {
+
+	private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+	private final AtomicLong version = new AtomicLong();
+	private final boolean etagEnabled;
+	
+	public MemberDataVersion(@Value("${querydsl.etag.enabled:true}") boolean etagEnabled) {
+		this.etagEnabled = etagEnabled;
+	}
+	
+	public void bump() {
+		version.incrementAndGet();
+	}
+	
+	public String current() {
+		return epoch + "-" + version.get();
+	}
+	
+	/**
+	 * 조건별 ETag. 같은 버전이라도 조건이 다르면 다른 값이다. 꺼져 있으면 null
+	 */
+	public String etag(MemberSearchCondition condition) {
+		if (!etagEnabled) {
+			return null;
+		}
+		return current() + "-" + Integer.toHexString(condition.hashCode());
+	}
+	
+}
@@ -0,0 +1,63 @@
+package study.querydsl.jdbc;
+
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.springframework.stereotype.Component;
+
+import com.p6spy.engine.common.ConnectionInformation;
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * member / team 에 대한 insert, update, delete 를 JDBC 레벨에서 감지해 MemberDataVersion 을 올린다.
+ * 엔티티 flush 뿐 아니라 bulk execute() 도 같은 경로를 지나므로 모두 잡힌다.
+ * 
+ * 실행 시점에 한 번, 커밋(롤백) 시점에 한 번 더 올린다.
+ * 실행과 커밋 사이에 조회한 요청이 커밋 전 데이터를 새 버전으로 캐시하는 것을 막기 위함이다.
+ */
+@Component
+@RequiredArgsConstructor
+public class MemberDataVersionListener extends SimpleJdbcEventListener {
+
+	private static final Pattern MEMBER_TEAM_WRITE = Pattern.compile(
+			"^\\s*(insert\\s+into|update|delete\\s+from|merge\\s+into)\\s+(member|team)\\b", Pattern.CASE_INSENSITIVE);
+	
+	private final MemberDataVersion memberDataVersion;
+	private final Set<ConnectionInformation> writers = ConcurrentHashMap.newKeySet();
+	
+	@Override
+	public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+		String sql = statementInformation.getSql();
+		if (sql != null && MEMBER_TEAM_WRITE.matcher(sql).find()) {
+			writers.add(statementInformation.getConnectionInformation());
+			memberDataVersion.bump();
+		}
+	}
+	
+	@Override
+	public void onAfterCommit(ConnectionInformation connectionInformation, long timeElapsedNanos, SQLException e) {
+		endTransaction(connectionInformation);
+	}
+	
+	@Override
+	public void onAfterRollback(ConnectionInformation connectionInformation, long timeElapsedNanos, SQLException e) {
+		endTransaction(connectionInformation);
+	}
+	
+	@Override
+	public void onAfterConnectionClose(ConnectionInformation connectionInformation, SQLException e) {
+		writers.remove(connectionInformation);
+	}
+	
+	private void endTransaction(ConnectionInformation connectionInformation) {
+		if (writers.remove(connectionInformation)) {
+			memberDataVersion.bump();
+		}
+	}
+	
+}
@@ -0,0 +1,397 @@
+package study.querydsl.jdbc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.PooledSequenceGenerator;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberCache;
+import study.querydsl.repository.UsernameFilter;
+
+/**
+ * team / member 테이블의 바이너리 스냅샷. InitMember 처럼 건마다 persist 하지 않고 환경을 채울 때 쓴다.
+ * 파일은 memory-mapped 창(WINDOW) 단위로 읽고 쓰며, 복원은 JDBC batch insert 로 한다.
+ *
+ * 파일 형식 (big endian)
+ *   "QDSNAP01"
+ *   'T' { 1, team_id(long), name(string) }* 0, 건수(long)
+ *   'M' { 1, member_id(long), username(string), age(int), team_id(nullable long), team_name(string) }* 0, 건수(long)
+ *   CRC32(long) : 앞의 모든 바이트
+ * string : 길이(int, null 이면 -1) + UTF-8, nullable long : 0 | 1 + long
+ *
+ * updated_at 은 담지 않는다. 복원된 행은 복원 시각을 갖는다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MemberSnapshot {
+
+	private static final byte[] MAGIC = "QDSNAP01".getBytes(StandardCharsets.US_ASCII);
+	private static final byte TEAM = 'T';
+	private static final byte MEMBER = 'M';
+	private static final byte ROW = 1;
+	private static final byte END = 0;
+	private static final int BATCH_SIZE = 1_000;
+	private static final int WINDOW = 64 << 20;
+
+	private final JdbcTemplate jdbcTemplate;
+	private final EntityManagerFactory emf;
+	private final MemberCache memberCache;
+	private final UsernameFilter usernameFilter;
+
+	/**
+	 * @return 파일 크기(byte)
+	 */
+	@Transactional(readOnly = true)
+	public long export(Path file) {
+		try (MappedOutput out = new MappedOutput(file)) {
+			out.write(MAGIC);
+
+			out.writeByte(TEAM);
+			long[] teams = new long[1];
+			jdbcTemplate.query("select team_id, name from team order by team_id", rs -> {
+				out.writeByte(ROW);
+				out.writeLong(rs.getLong(1));
+				out.writeString(rs.getString(2));
+				teams[0]++;
+			});
+			out.writeByte(END);
+			out.writeLong(teams[0]);
+
+			out.writeByte(MEMBER);
+			long[] members = new long[1];
+			jdbcTemplate.query("select member_id, username, age, team_id, team_name from member order by member_id", rs -> {
+				out.writeByte(ROW);
+				out.writeLong(rs.getLong(1));
+				out.writeString(rs.getString(2));
+				out.writeInt(rs.getInt(3));
+				out.writeNullableLong(nullableLong(rs, 4));
+				out.writeString(rs.getString(5));
+				members[0]++;
+			});
+			out.writeByte(END);
+			out.writeLong(members[0]);
+
+			long size = out.finish();
+			log.info("snapshot exported to {} : {} teams, {} members, {} bytes", file, teams[0], members[0], size);
+			return size;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * 비어 있는 team / member 에 스냅샷을 넣는다. 체크섬이 맞지 않으면 아무것도 넣지 않는다.
+	 * 넣은 뒤 시퀀스와 이 인스턴스의 id 생성기(메모리의 pooled-lo 블록)를 최대 id 뒤로 옮기고,
+	 * JDBC 로 넣었으므로 2차 캐시와 username 필터를 다시 맞춘다.
+	 * 다른 인스턴스가 이미 받아 둔 블록은 옮기지 못하므로 다른 인스턴스가 쓰지 않는 동안 복원한다.
+	 *
+	 * @return 넣은 회원 수
+	 */
+	@Transactional
+	public long restore(Path file) {
+		Long existing = jdbcTemplate.queryForObject("select (select count(*) from team) + (select count(*) from member)", Long.class);
+		if (existing != null && existing > 0) {
+			throw new IllegalStateException("team / member must be empty before restoring a snapshot");
+		}
+
+		long teams;
+		long members;
+		try (MappedInput in = new MappedInput(file)) {
+			in.verify();
+			if (!in.matches(MAGIC)) {
+				throw new IllegalStateException("not a member snapshot : " + file);
+			}
+
+			in.expect(TEAM);
+			teams = insertRows(in, "insert into team (team_id, name) values (?, ?)",
+					new int[] { Types.BIGINT, Types.VARCHAR },
+					() -> new Object[] { in.readLong(), in.readString() });
+
+			in.expect(MEMBER);
+			members = insertRows(in, "insert into member (member_id, username, age, team_id, team_name) values (?, ?, ?, ?, ?)",
+					new int[] { Types.BIGINT, Types.VARCHAR, Types.INTEGER, Types.BIGINT, Types.VARCHAR },
+					() -> new Object[] { in.readLong(), in.readString(), in.readInt(), in.readNullableLong(), in.readString() });
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		// id 를 직접 넣었으므로 이후 JPA insert 와 겹치지 않게 시퀀스와 메모리의 블록을 뒤로 민다.
+		skipGeneratedIds(Team.class, restartSequence("team_seq", "select max(team_id) from team"));
+		skipGeneratedIds(Member.class, restartSequence("member_seq", "select max(member_id) from member"));
+
+		memberCache.evict();
+		usernameFilter.rebuild();
+		log.info("snapshot restored from {} : {} teams, {} members", file, teams, members);
+		return members;
+	}
+
+	private long insertRows(MappedInput in, String sql, int[] types, RowReader reader) throws IOException {
+		List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+		long rows = 0;
+		while (in.readByte() == ROW) {
+			batch.add(reader.read());
+			rows++;
+			if (batch.size() == BATCH_SIZE) {
+				jdbcTemplate.batchUpdate(sql, batch, types);
+				batch.clear();
+			}
+		}
+		if (!batch.isEmpty()) {
+			jdbcTemplate.batchUpdate(sql, batch, types);
+		}
+		long expected = in.readLong();
+		if (rows != expected) {
+			throw new IllegalStateException("snapshot section has " + rows + " rows, expected " + expected);
+		}
+		return rows;
+	}
+
+	/**
+	 * @return 최대 id (없으면 0)
+	 */
+	private long restartSequence(String sequence, String maxIdSql) {
+		Long maxId = jdbcTemplate.queryForObject(maxIdSql, Long.class);
+		long max = maxId != null ? maxId : 0;
+		jdbcTemplate.execute("alter sequence " + sequence + " restart with " + (max + 1));
+		return max;
+	}
+
+	private void skipGeneratedIds(Class<?> entity, long maxId) {
+		IdentifierGenerator generator = emf.unwrap(SessionFactoryImplementor.class).getMetamodel()
+				.entityPersister(entity).getIdentifierGenerator();
+		if (generator instanceof PooledSequenceGenerator) {
+			((PooledSequenceGenerator) generator).skipTo(maxId);
+		}
+	}
+
+	private static Long nullableLong(ResultSet rs, int column) throws SQLException {
+		long value = rs.getLong(column);
+		return rs.wasNull() ? null : value;
+	}
+
+	@FunctionalInterface
+	private interface RowReader {
+		Object[] read() throws IOException;
+	}
+
+	/**
+	 * WINDOW 크기로 파일을 매핑해 가며 쓴다. 창을 넘길 때마다 쓴 부분을 CRC 에 더한다.
+	 */
+	private static class MappedOutput implements Closeable {
+
+		private final FileChannel channel;
+		private final CRC32 crc = new CRC32();
+		private MappedByteBuffer window;
+		private long windowStart;
+
+		MappedOutput(Path file) throws IOException {
+			channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.READ, StandardOpenOption.WRITE);
+			window = channel.map(MapMode.READ_WRITE, 0, WINDOW);
+		}
+
+		private MappedByteBuffer ensure(int bytes) {
+			if (window.remaining() < bytes) {
+				long position = position();
+				checksum();
+				window.force();
+				windowStart = position;
+				try {
+					window = channel.map(MapMode.READ_WRITE, position, Math.max(WINDOW, bytes));
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			return window;
+		}
+
+		private long position() {
+			return windowStart + window.position();
+		}
+
+		private void checksum() {
+			ByteBuffer written = window.duplicate();
+			written.flip();
+			crc.update(written);
+		}
+
+		void write(byte[] bytes) {
+			ensure(bytes.length).put(bytes);
+		}
+
+		void writeByte(byte value) {
+			ensure(1).put(value);
+		}
+
+		void writeInt(int value) {
+			ensure(4).putInt(value);
+		}
+
+		void writeLong(long value) {
+			ensure(8).putLong(value);
+		}
+
+		void writeNullableLong(Long value) {
+			if (value == null) {
+				writeByte((byte) 0);
+			} else {
+				ensure(9).put((byte) 1).putLong(value);
+			}
+		}
+
+		void writeString(String value) {
+			if (value == null) {
+				writeInt(-1);
+				return;
+			}
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			ensure(4 + bytes.length).putInt(bytes.length).put(bytes);
+		}
+
+		/**
+		 * CRC 를 붙이고 파일을 실제 크기로 자른다.
+		 * @return 파일 크기
+		 */
+		long finish() throws IOException {
+			// 창을 넘기면 ensure 가 이전 창을 CRC 에 더하므로 먼저 자리를 확보한다.
+			ensure(8);
+			checksum();
+			window.putLong(crc.getValue());
+			long size = position();
+			window.force();
+			channel.truncate(size);
+			return size;
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+
+	}
+
+	/**
+	 * WINDOW 크기로 파일을 매핑해 가며 읽는다. 마지막 8 byte(CRC)는 데이터로 읽지 않는다.
+	 */
+	private static class MappedInput implements Closeable {
+
+		private final FileChannel channel;
+		private final long limit;
+		private MappedByteBuffer window;
+		private long windowStart;
+
+		MappedInput(Path file) throws IOException {
+			channel = FileChannel.open(file, StandardOpenOption.READ);
+			limit = channel.size() - 8;
+			if (limit < MAGIC.length) {
+				throw new IllegalStateException("snapshot too short : " + file);
+			}
+			window = channel.map(MapMode.READ_ONLY, 0, Math.min(WINDOW, limit));
+		}
+
+		/**
+		 * 데이터를 읽기 전에 파일 전체의 CRC 를 확인한다.
+		 */
+		void verify() throws IOException {
+			CRC32 crc = new CRC32();
+			for (long position = 0; position < limit; position += WINDOW) {
+				crc.update(channel.map(MapMode.READ_ONLY, position, Math.min(WINDOW, limit - position)));
+			}
+			ByteBuffer trailer = ByteBuffer.allocate(8);
+			while (trailer.hasRemaining()) {
+				if (channel.read(trailer, limit + trailer.position()) < 0) {
+					throw new IllegalStateException("snapshot truncated");
+				}
+			}
+			trailer.flip();
+			if (trailer.getLong() != crc.getValue()) {
+				throw new IllegalStateException("snapshot checksum mismatch");
+			}
+		}
+
+		private MappedByteBuffer ensure(int bytes) throws IOException {
+			if (window.remaining() < bytes) {
+				long position = windowStart + window.position();
+				if (position + bytes > limit) {
+					throw new IllegalStateException("snapshot truncated at " + position);
+				}
+				windowStart = position;
+				window = channel.map(MapMode.READ_ONLY, position, Math.min(Math.max(WINDOW, bytes), limit - position));
+			}
+			return window;
+		}
+
+		boolean matches(byte[] expected) throws IOException {
+			byte[] actual = new byte[expected.length];
+			ensure(actual.length).get(actual);
+			return Arrays.equals(expected, actual);
+		}
+
+		void expect(byte section) throws IOException {
+			byte actual = readByte();
+			if (actual != section) {
+				throw new IllegalStateException("expected snapshot section " + (char) section + " but was " + actual);
+			}
+		}
+
+		byte readByte() throws IOException {
+			return ensure(1).get();
+		}
+
+		int readInt() throws IOException {
+			return ensure(4).getInt();
+		}
+
+		long readLong() throws IOException {
+			return ensure(8).getLong();
+		}
+
+		Long readNullableLong() throws IOException {
+			return readByte() == 0 ? null : readLong();
+		}
+
+		String readString() throws IOException {
+			int length = readInt();
+			if (length < 0) {
+				return null;
+			}
+			byte[] bytes = new byte[length];
+			ensure(length).get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+
+	}
+
+}
@@ -0,0 +1,114 @@
+package study.querydsl.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+import study.querydsl.dto.SlowQueryDto;
+
+/**
+ * 임계치를 넘은 쿼리를 실행계획(EXPLAIN)과 함께 고정 크기 ring buffer 에 보관한다.
+ * EXPLAIN 은 요청 스레드가 아닌 별도 스레드에서 원래 SQL 과 바인딩 값으로 PreparedStatement 를 만들어 실행하고, 밀리면 버린다.
+ * 바인딩 값은 EXPLAIN 에만 쓰고 보관하지 않는다. (사용자 입력이 /internal/slow-queries 로 나가지 않게)
+ */
+@Slf4j
+@Component
+public class SlowQueryLog {
+
+	static final String EXPLAIN = "explain ";
+	
+	private final ObjectProvider<DataSource> dataSource;
+	private final SlowQueryDto[] ring;
+	private long next;
+	
+	private final ThreadPoolExecutor explainExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<>(64), r -> {
+				Thread thread = new Thread(r, "slow-query-explain");
+				thread.setDaemon(true);
+				return thread;
+			}, new ThreadPoolExecutor.DiscardPolicy());
+	
+	// DataSource 는 p6spy listener 보다 늦게 만들어지므로 lazy 하게 가져온다.
+	public SlowQueryLog(ObjectProvider<DataSource> dataSource,
+			@Value("${querydsl.sql-log.slow-capacity:100}") int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("querydsl.sql-log.slow-capacity must be positive : " + capacity);
+		}
+		this.dataSource = dataSource;
+		this.ring = new SlowQueryDto[capacity];
+	}
+	
+	/**
+	 * @param sql 바인딩 전 SQL (? 자리표시자)
+	 * @param parameters 바인딩 값 (1번 파라미터부터), 모르면 null
+	 */
+	public void capture(String sql, Object[] parameters, long elapsedNanos) {
+		LocalDateTime capturedAt = LocalDateTime.now();
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+		
+		explainExecutor.execute(() -> add(new SlowQueryDto(capturedAt, elapsedMillis, sql, explain(sql, parameters))));
+	}
+	
+	/**
+	 * 최근 것부터
+	 */
+	public synchronized List<SlowQueryDto> getEntries() {
+		int size = (int) Math.min(next, ring.length);
+		List<SlowQueryDto> entries = new ArrayList<>(size);
+		for (int i = 1; i <= size; i++) {
+			entries.add(ring[(int) ((next - i) % ring.length)]);
+		}
+		return entries;
+	}
+	
+	private synchronized void add(SlowQueryDto slowQuery) {
+		ring[(int) (next++ % ring.length)] = slowQuery;
+	}
+	
+	private String explain(String sql, Object[] parameters) {
+		if (!sql.trim().toLowerCase(Locale.ROOT).startsWith("select")) {
+			return null;
+		}
+		
+		try (Connection connection = dataSource.getObject().getConnection();
+				PreparedStatement statement = connection.prepareStatement(EXPLAIN + sql)) {
+			if (parameters != null) {
+				for (int i = 0; i < parameters.length; i++) {
+					statement.setObject(i + 1, parameters[i]);
+				}
+			}
+			List<String> plan = new ArrayList<>();
+			try (ResultSet rs = statement.executeQuery()) {
+				while (rs.next()) {
+					plan.add(rs.getString(1));
+				}
+			}
+			return String.join("\n", plan);
+		} catch (SQLException e) {
+			log.debug("explain failed: {}", sql, e);
+			return null;
+		}
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		explainExecutor.shutdownNow();
+	}
+	
+}
@@ -0,0 +1,112 @@
+package study.querydsl.jdbc;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.p6spy.engine.common.PreparedStatementInformation;
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * format_sql / org.hibernate.SQL debug 로깅 대신 사용하는 p6spy listener.
+ * 
+ * 1. 전체 statement 중 sample-rate 비율만 비동기로 로깅한다. (바인딩 전 SQL 만, 값에는 username 같은 개인정보가 있다)
+ * 2. slow-threshold-ms 를 넘은 statement 는 모두 SlowQueryLog 에 남긴다. (바인딩 값은 EXPLAIN 에만 쓴다)
+ */
+@Slf4j
+@Component
+public class SqlLogListener extends SimpleJdbcEventListener {
+
+	private final SlowQueryLog slowQueryLog;
+	private final double sampleRate;
+	private final long slowThresholdNanos;
+	
+	private final ThreadPoolExecutor logExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<>(1024), r -> {
+				Thread thread = new Thread(r, "sql-log");
+				thread.setDaemon(true);
+				return thread;
+			}, new ThreadPoolExecutor.DiscardPolicy());
+	
+	// Hibernate 는 한 스레드에서 set -> execute 순으로 부르므로 스레드마다 마지막 statement 의 값만 둔다.
+	private final ThreadLocal<BoundParameters> boundParameters = ThreadLocal.withInitial(BoundParameters::new);
+	
+	public SqlLogListener(SlowQueryLog slowQueryLog,
+			@Value("${querydsl.sql-log.sample-rate:0.01}") double sampleRate,
+			@Value("${querydsl.sql-log.slow-threshold-ms:200}") long slowThresholdMillis) {
+		this.slowQueryLog = slowQueryLog;
+		this.sampleRate = sampleRate;
+		this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+	}
+	
+	@Override
+	public void onAfterPreparedStatementSet(PreparedStatementInformation statementInformation, int parameterIndex, Object value, SQLException e) {
+		boundParameters.get().set(statementInformation, parameterIndex, value);
+	}
+	
+	@Override
+	public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+		boolean slow = timeElapsedNanos >= slowThresholdNanos;
+		Object[] parameters = boundParameters.get().take(statementInformation, slow);
+		
+		String sql = statementInformation.getSql();
+		if (sql == null || sql.trim().toLowerCase(Locale.ROOT).startsWith(SlowQueryLog.EXPLAIN)) {
+			return;
+		}
+		
+		boolean sampled = ThreadLocalRandom.current().nextDouble() < sampleRate;
+		if (slow) {
+			slowQueryLog.capture(sql, parameters, timeElapsedNanos);
+		}
+		if (sampled) {
+			logExecutor.execute(() -> log.info("{}ms | {}", TimeUnit.NANOSECONDS.toMillis(timeElapsedNanos), sql));
+		}
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		logExecutor.shutdown();
+	}
+	
+	private static class BoundParameters {
+		
+		private StatementInformation statement;
+		private final List<Object> values = new ArrayList<>();
+		
+		void set(StatementInformation statement, int parameterIndex, Object value) {
+			if (this.statement != statement) {
+				this.statement = statement;
+				values.clear();
+			}
+			while (values.size() < parameterIndex) {
+				values.add(null);
+			}
+			values.set(parameterIndex - 1, value);
+		}
+		
+		/**
+		 * 이 statement 에 바인딩된 값을 비운다. copy 면 비우기 전에 복사해 돌려준다. (바인딩이 없었으면 빈 배열)
+		 */
+		Object[] take(StatementInformation statement, boolean copy) {
+			Object[] taken = !copy ? null : this.statement == statement ? values.toArray() : new Object[0];
+			this.statement = null;
+			values.clear();
+			return taken;
+		}
+		
+	}
+	
+}
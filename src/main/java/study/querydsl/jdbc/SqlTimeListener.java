@@ -0,0 +1,38 @@
+package study.querydsl.jdbc;
+
+import java.sql.SQLException;
+
+import org.springframework.stereotype.Component;
+
+import com.p6spy.engine.common.ResultSetInformation;
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+
+/**
+ * 스레드별로 JDBC 에서 보낸 시간(statement 실행 + ResultSet.next)을 누적한다.
+ * 구간의 SQL 시간은 구간 앞뒤의 current() 차이로 구한다. (study.querydsl.jfr)
+ */
+@Component
+public class SqlTimeListener extends SimpleJdbcEventListener {
+
+	private static final ThreadLocal<long[]> ELAPSED = ThreadLocal.withInitial(() -> new long[1]);
+
+	/**
+	 * 현재 스레드의 누적 SQL 시간(ns)
+	 */
+	public static long current() {
+		return ELAPSED.get()[0];
+	}
+
+	@Override
+	public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+		ELAPSED.get()[0] += timeElapsedNanos;
+	}
+
+	// H2 tcp 는 fetch size 단위로 가져오므로 next() 도 DB 시간이다.
+	@Override
+	public void onAfterResultSetNext(ResultSetInformation resultSetInformation, long timeElapsedNanos, boolean hasNext, SQLException e) {
+		ELAPSED.get()[0] += timeElapsedNanos;
+	}
+
+}
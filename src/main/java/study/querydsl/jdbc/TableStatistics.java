@@ -0,0 +1,25 @@
+package study.querydsl.jdbc;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * H2 가 유지하는 테이블 통계. (INFORMATION_SCHEMA.TABLES.ROW_COUNT_ESTIMATE)
+ * 테이블을 스캔하지 않고 primary index 의 크기로 바로 답한다.
+ */
+@Component
+@RequiredArgsConstructor
+public class TableStatistics {
+
+	private final JdbcTemplate jdbcTemplate;
+	
+	public long estimatedRowCount(String table) {
+		Long estimate = jdbcTemplate.queryForObject(
+				"select row_count_estimate from information_schema.tables where table_schema = schema() and table_name = ?",
+				Long.class, table.toUpperCase());
+		return estimate != null ? estimate : 0;
+	}
+	
+}
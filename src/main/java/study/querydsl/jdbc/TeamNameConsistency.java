@@ -0,0 +1,112 @@
+package study.querydsl.jdbc;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import study.querydsl.repository.MemberCache;
+
+/**
+ * member.team_name (team.name 의 복제) 이 실제 팀 이름과 어긋난 회원을 찾아 고친다.
+ * JDBC 로 직접 쓰거나 team.name 만 바꾸는 경로가 있으면 어긋날 수 있다.
+ *
+ * querydsl.team-name-check.interval-seconds 가 0 보다 크면 주기적으로 검사해 어긋난 건수를 로그와 지표로 남긴다.
+ * repair 가 true 면 찾은 즉시 고친다. (기본 false : 운영 데이터를 조용히 바꾸지 않도록 보고만 한다)
+ *
+ * 지표 : member.team_name.drifted (마지막 검사에서 어긋난 회원 수)
+ */
+@Slf4j
+@Component
+public class TeamNameConsistency {
+
+	// 팀이 없는 회원은 team_name 도 null 이어야 한다.
+	private static final String DRIFTED = "m.team_name is distinct from (select t.name from team t where t.team_id = m.team_id)";
+
+	private final JdbcTemplate jdbcTemplate;
+	private final MemberCache memberCache;
+	private final TransactionTemplate transactionTemplate;
+	private final long intervalSeconds;
+	private final boolean repair;
+	private final AtomicLong lastDrifted = new AtomicLong();
+	private final ScheduledExecutorService checker = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "team-name-check");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	public TeamNameConsistency(JdbcTemplate jdbcTemplate, MemberCache memberCache, MeterRegistry meterRegistry,
+			PlatformTransactionManager transactionManager,
+			@Value("${querydsl.team-name-check.interval-seconds:0}") long intervalSeconds,
+			@Value("${querydsl.team-name-check.repair:false}") boolean repair) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.memberCache = memberCache;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.intervalSeconds = intervalSeconds;
+		this.repair = repair;
+		Gauge.builder("member.team_name.drifted", lastDrifted, AtomicLong::get).register(meterRegistry);
+	}
+
+	// 빈이 다 만들어진 뒤에 돌기 시작해야 check 가 초기화 중인 빈을 보지 않는다.
+	@PostConstruct
+	public void start() {
+		if (intervalSeconds > 0) {
+			checker.scheduleWithFixedDelay(this::check, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+		}
+	}
+
+	public long countDrifted() {
+		Long count = jdbcTemplate.queryForObject("select count(*) from member m where " + DRIFTED, Long.class);
+		return count != null ? count : 0;
+	}
+
+	/**
+	 * check 가 자기 자신을 부르므로 @Transactional 프록시를 거치지 않는다. 트랜잭션은 TransactionTemplate 으로 건다.
+	 * 
+	 * @return 고친 회원 수
+	 */
+	public long repair() {
+		Integer repaired = transactionTemplate.execute(status -> {
+			int updated = jdbcTemplate.update("update member m set team_name = (select t.name from team t where t.team_id = m.team_id) where " + DRIFTED);
+			memberCache.evict();
+			return updated;
+		});
+		return repaired != null ? repaired : 0;
+	}
+
+	void check() {
+		try {
+			long drifted = countDrifted();
+			lastDrifted.set(drifted);
+			if (drifted == 0) {
+				return;
+			}
+			if (repair) {
+				log.warn("member.team_name drifted for {} members, repaired {}", drifted, repair());
+				lastDrifted.set(countDrifted());
+			} else {
+				log.warn("member.team_name drifted for {} members", drifted);
+			}
+		} catch (RuntimeException e) {
+			log.warn("team name check failed", e);
+		}
+	}
+
+	@PreDestroy
+	public void close() {
+		checker.shutdownNow();
+	}
+
+}
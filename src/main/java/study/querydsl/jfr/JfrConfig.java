@@ -0,0 +1,42 @@
+package study.querydsl.jfr;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * JFR 이벤트(MemberQueryEvent, MemberRequestEvent) 연결.
+ *
+ * 이벤트는 레코딩에서 켜야 기록된다. 예)
+ *   java -XX:StartFlightRecording=settings=profile,filename=querydsl.jfr ...
+ *   jcmd <pid> JFR.start settings=profile
+ * 꺼져 있으면 이벤트 객체 생성 외의 비용은 없다.
+ */
+@Configuration
+public class JfrConfig implements WebMvcConfigurer {
+
+	// boot 의 기본 MappingJackson2HttpMessageConverter 를 대신한다.
+	@Bean
+	public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper) {
+		return new TimedJackson2HttpMessageConverter(objectMapper);
+	}
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(new HandlerInterceptor() {
+			@Override
+			public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+				MemberRequestEvent.complete();
+			}
+		}).addPathPatterns("/v1/members/**", "/v2/members/**");
+	}
+
+}
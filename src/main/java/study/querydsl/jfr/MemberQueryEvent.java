@@ -0,0 +1,73 @@
+package study.querydsl.jfr;
+
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import study.querydsl.jdbc.SqlTimeListener;
+
+/**
+ * 저장소 조회 한 번. 이벤트 구간은 메서드 전체, 그중 JDBC 시간이 sqlTime, 나머지(엔티티/DTO 변환)가 materializationTime.
+ * 레코딩에서 이 이벤트가 꺼져 있으면 시각을 재지 않는다.
+ */
+@Name("study.querydsl.MemberQuery")
+@Label("Member Query")
+@Category({ "Querydsl", "Repository" })
+@StackTrace(false)
+public class MemberQueryEvent extends jdk.jfr.Event {
+
+	@Label("Repository")
+	String repository;
+
+	@Label("Method")
+	String method;
+
+	@Label("Shape")
+	@Description("검색 조건 조합 또는 fetch plan")
+	String shape;
+
+	@Label("Rows")
+	int rows;
+
+	@Label("SQL Time")
+	@Timespan
+	long sqlTime;
+
+	@Label("Materialization Time")
+	@Timespan
+	long materializationTime;
+
+	public static <T> List<T> record(String repository, String method, String shape, Supplier<List<T>> query) {
+		return record(repository, method, shape, query, List::size);
+	}
+
+	public static <T> T record(String repository, String method, String shape, Supplier<T> query, ToIntFunction<T> rows) {
+		MemberQueryEvent event = new MemberQueryEvent();
+		if (!event.isEnabled()) {
+			return query.get();
+		}
+		long sqlStart = SqlTimeListener.current();
+		long start = System.nanoTime();
+		event.begin();
+		T result = query.get();
+		event.end();
+		long elapsed = System.nanoTime() - start;
+		if (event.shouldCommit()) {
+			event.repository = repository;
+			event.method = method;
+			event.shape = shape;
+			event.rows = rows.applyAsInt(result);
+			event.sqlTime = SqlTimeListener.current() - sqlStart;
+			event.materializationTime = Math.max(0, elapsed - event.sqlTime);
+			event.commit();
+		}
+		return result;
+	}
+
+}
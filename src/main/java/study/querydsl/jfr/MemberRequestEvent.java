@@ -0,0 +1,119 @@
+package study.querydsl.jfr;
+
+import java.util.Collection;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import study.querydsl.jdbc.SqlTimeListener;
+
+/**
+ * MemberController 요청 한 번. 컨트롤러 메서드 시작부터 응답 직렬화가 끝날 때까지.
+ *
+ * 컨트롤러가 begin() 으로 시작하고 rows() 로 결과 건수를 남기면,
+ * 응답 본문을 쓰는 TimedJackson2HttpMessageConverter 가 serializationTime 을 더하고
+ * 요청이 끝날 때(JfrConfig 의 interceptor) commit 한다.
+ * 같은 요청 스레드 안에서만 이어지므로, 다른 스레드에서 검색하는 DeferredResult 응답은 record() 로 그 스레드에서 기록한다.
+ * (serializationTime 없이) Flux 응답은 기록하지 않는다.
+ */
+@Name("study.querydsl.MemberRequest")
+@Label("Member Request")
+@Category({ "Querydsl", "Controller" })
+@StackTrace(false)
+public class MemberRequestEvent extends jdk.jfr.Event {
+
+	private static final ThreadLocal<Pending> PENDING = new ThreadLocal<>();
+
+	@Label("Endpoint")
+	String endpoint;
+
+	@Label("Shape")
+	@Description("검색 조건 조합")
+	String shape;
+
+	@Label("Rows")
+	int rows;
+
+	@Label("SQL Time")
+	@Timespan
+	long sqlTime;
+
+	@Label("Serialization Time")
+	@Timespan
+	long serializationTime;
+
+	public static void begin(String endpoint, String shape) {
+		MemberRequestEvent event = new MemberRequestEvent();
+		if (!event.isEnabled()) {
+			return;
+		}
+		event.endpoint = endpoint;
+		event.shape = shape;
+		PENDING.set(new Pending(event, SqlTimeListener.current()));
+		event.begin();
+	}
+
+	/**
+	 * 요청 스레드 밖(DeferredResult)에서 실행되는 검색을 begin ~ commit 까지 한 번에 기록한다.
+	 */
+	public static <T> T record(String endpoint, String shape, Supplier<T> work, ToIntFunction<T> rows) {
+		begin(endpoint, shape);
+		try {
+			T result = work.get();
+			return rows(result, rows.applyAsInt(result));
+		} finally {
+			complete();
+		}
+	}
+
+	public static <T extends Collection<?>> T rows(T result) {
+		return rows(result, result.size());
+	}
+
+	public static <T> T rows(T result, int rows) {
+		Pending pending = PENDING.get();
+		if (pending != null) {
+			pending.event.rows = rows;
+		}
+		return result;
+	}
+
+	static void serialized(long nanos) {
+		Pending pending = PENDING.get();
+		if (pending != null) {
+			pending.event.serializationTime += nanos;
+		}
+	}
+
+	static void complete() {
+		Pending pending = PENDING.get();
+		if (pending == null) {
+			return;
+		}
+		PENDING.remove();
+		MemberRequestEvent event = pending.event;
+		event.end();
+		if (event.shouldCommit()) {
+			event.sqlTime = SqlTimeListener.current() - pending.sqlStart;
+			event.commit();
+		}
+	}
+
+	private static class Pending {
+
+		private final MemberRequestEvent event;
+		private final long sqlStart;
+
+		Pending(MemberRequestEvent event, long sqlStart) {
+			this.event = event;
+			this.sqlStart = sqlStart;
+		}
+
+	}
+
+}
@@ -0,0 +1,33 @@
+package study.querydsl.jfr;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 응답 본문 직렬화 시간을 MemberRequestEvent 에 더한다.
+ * 응답 버퍼가 차면 소켓 쓰기도 이 안에서 일어나므로 느린 클라이언트의 대기 시간도 포함된다.
+ */
+public class TimedJackson2HttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+	public TimedJackson2HttpMessageConverter(ObjectMapper objectMapper) {
+		super(objectMapper);
+	}
+
+	@Override
+	protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+			throws IOException, HttpMessageNotWritableException {
+		long start = System.nanoTime();
+		try {
+			super.writeInternal(object, type, outputMessage);
+		} finally {
+			MemberRequestEvent.serialized(System.nanoTime() - start);
+		}
+	}
+
+}
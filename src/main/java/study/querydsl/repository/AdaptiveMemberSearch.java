@@ -0,0 +1,328 @@
+package study.querydsl.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.jdbc.MemberDataVersion;
+import study.querydsl.repository.sql.MemberSqlRepository;
+
+/**
+ * 검색 조건의 모양(shape)과 나이 범위 폭별로 관측한 결과 건수, 응답 시간으로 실행 방식을 고른다.
+ *
+ *   CACHED         : 결과가 작으면 데이터 버전(MemberDataVersion)이 같은 동안 결과를 재사용한다.
+ *                    데이터 버전은 이 인스턴스의 p6spy datasource 를 지난 쓰기만 세므로 기본은 꺼져 있다. (cache-enabled)
+ *                    인스턴스가 하나이고 모든 쓰기가 그 datasource 를 지날 때만 켠다.
+ *   INDEXED        : MemberJpaRepository.search 한 번. (기본)
+ *   PARALLEL_RANGE : 결과가 크고 느리면 member_id 구간을 나눠 querydsl-sql 로 동시에 읽는다.
+ *                    구간마다 트랜잭션이 따로이므로 구간 사이에 일관된 스냅샷은 아니다.
+ *                    구간 스레드(range-scan-threads)는 요청들이 나눠 쓰고, 요청의 deadline(없으면 parallel-timeout-ms)
+ *                    안에 모든 구간이 끝나지 않으면 실행 중인 구간 쿼리까지 취소하고 QueryTimeoutException 을 던진다.
+ *   STREAMING      : 결과가 아주 크고 호출자가 sink 를 주면 목록을 만들지 않고 읽는 대로 넘긴다.
+ *
+ * 관측은 조건 모양과 나이 범위별로 따로 쌓는다. (key)
+ * 관측이 min-samples 보다 적은 모양은 INDEXED 로 실행하며 배운다.
+ * 지표 : member.search (strategy, shape 별 timer)
+ */
+@Component
+public class AdaptiveMemberSearch {
+
+	public enum Strategy {
+		CACHED, INDEXED, PARALLEL_RANGE, STREAMING
+	}
+
+	// 이동 평균 가중치
+	private static final double ALPHA = 0.2;
+	// 한쪽만 열린 나이 범위는 경계값을 이 폭으로 묶는다.
+	private static final int OPEN_RANGE_BUCKET = 10;
+
+	private final MemberJpaRepository memberJpaRepository;
+	private final MemberSqlRepository memberSqlRepository;
+	private final MemberDataVersion memberDataVersion;
+	private final MeterRegistry meterRegistry;
+
+	private final int minSamples;
+	private final boolean cacheEnabled;
+	private final long cacheMaxRows;
+	private final long parallelMinRows;
+	private final long parallelMinNanos;
+	private final long streamingMinRows;
+	private final int parallelism;
+	private final long parallelTimeoutMillis;
+
+	private final Map<String, Observed> observed = new ConcurrentHashMap<>();
+	private final Map<List<Object>, CachedResult> cache;
+	private final ExecutorService rangeScanner;
+
+	public AdaptiveMemberSearch(MemberJpaRepository memberJpaRepository, MemberSqlRepository memberSqlRepository,
+			MemberDataVersion memberDataVersion, MeterRegistry meterRegistry,
+			@Value("${querydsl.adaptive.min-samples:3}") int minSamples,
+			@Value("${querydsl.adaptive.cache-enabled:false}") boolean cacheEnabled,
+			@Value("${querydsl.adaptive.cache-max-rows:100}") long cacheMaxRows,
+			@Value("${querydsl.adaptive.cache-entries:1000}") int cacheEntries,
+			@Value("${querydsl.adaptive.parallel-min-rows:10000}") long parallelMinRows,
+			@Value("${querydsl.adaptive.parallel-min-millis:50}") long parallelMinMillis,
+			@Value("${querydsl.adaptive.streaming-min-rows:50000}") long streamingMinRows,
+			@Value("${querydsl.adaptive.parallelism:4}") int parallelism,
+			@Value("${querydsl.adaptive.range-scan-threads:16}") int rangeScanThreads,
+			@Value("${querydsl.adaptive.parallel-timeout-ms:30000}") long parallelTimeoutMillis) {
+		this.memberJpaRepository = memberJpaRepository;
+		this.memberSqlRepository = memberSqlRepository;
+		this.memberDataVersion = memberDataVersion;
+		this.meterRegistry = meterRegistry;
+		this.minSamples = minSamples;
+		this.cacheEnabled = cacheEnabled;
+		this.cacheMaxRows = cacheMaxRows;
+		this.parallelMinRows = parallelMinRows;
+		this.parallelMinNanos = TimeUnit.MILLISECONDS.toNanos(parallelMinMillis);
+		this.streamingMinRows = streamingMinRows;
+		this.parallelism = parallelism;
+		this.parallelTimeoutMillis = parallelTimeoutMillis;
+		this.cache = Collections.synchronizedMap(new LinkedHashMap<List<Object>, CachedResult>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<List<Object>, CachedResult> eldest) {
+				return size() > cacheEntries;
+			}
+		});
+		// 동시에 들어온 요청들이 구간 스레드를 나눠 쓴다.
+		this.rangeScanner = Executors.newFixedThreadPool(Math.max(rangeScanThreads, parallelism), r -> {
+			Thread thread = new Thread(r, "member-range-scan");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public List<MemberTeamDto> search(MemberSearchCondition condition) {
+		String key = key(condition);
+		Strategy strategy = choose(key, condition, false);
+		return execute(key, strategy, condition, null);
+	}
+
+	/**
+	 * deadline 까지 끝나지 않거나 deadline.cancel() 되면 실행 중인 쿼리를 취소하고 QueryTimeoutException 을 던진다.
+	 * 실행 방식은 deadline 없는 search 와 같은 기준으로 고른다.
+	 */
+	public List<MemberTeamDto> search(MemberSearchCondition condition, QueryDeadline deadline) {
+		String key = key(condition);
+		Strategy strategy = choose(key, condition, false);
+		return execute(key, strategy, condition, deadline);
+	}
+
+	/**
+	 * 결과를 sink 로 넘긴다. 결과가 아주 크면 목록을 만들지 않는다.
+	 * @return 넘긴 건수
+	 */
+	public long search(MemberSearchCondition condition, Consumer<MemberTeamDto> sink) {
+		String key = key(condition);
+		Strategy strategy = choose(key, condition, true);
+		if (strategy != Strategy.STREAMING) {
+			List<MemberTeamDto> result = execute(key, strategy, condition, null);
+			result.forEach(sink);
+			return result.size();
+		}
+		long start = System.nanoTime();
+		long rows = memberSqlRepository.searchEach(condition, sink);
+		record(key, strategy, condition, rows, System.nanoTime() - start);
+		return rows;
+	}
+
+	/**
+	 * 이 조건이 지금 실행된다면 고를 방식
+	 */
+	public Strategy strategyFor(MemberSearchCondition condition, boolean streamable) {
+		return choose(key(condition), condition, streamable);
+	}
+
+	private Strategy choose(String key, MemberSearchCondition condition, boolean streamable) {
+		Observed stats = observed.get(key);
+		if (stats == null || stats.samples < minSamples) {
+			return Strategy.INDEXED;
+		}
+		double rows = stats.rows;
+		if (cacheEnabled && rows <= cacheMaxRows) {
+			return Strategy.CACHED;
+		}
+		if (streamable && rows >= streamingMinRows) {
+			return Strategy.STREAMING;
+		}
+		// 나눠 읽는 비용(구간마다 쿼리, 스레드 전환)보다 오래 걸리는 경우만
+		if (rows >= parallelMinRows && stats.nanos >= parallelMinNanos && parallelism > 1) {
+			return Strategy.PARALLEL_RANGE;
+		}
+		return Strategy.INDEXED;
+	}
+
+	private List<MemberTeamDto> execute(String key, Strategy strategy, MemberSearchCondition condition, QueryDeadline deadline) {
+		long start = System.nanoTime();
+		List<MemberTeamDto> result;
+		switch (strategy) {
+		case CACHED:
+			result = cached(condition, deadline);
+			break;
+		case PARALLEL_RANGE:
+			result = parallelRangeScan(condition, deadline);
+			break;
+		default:
+			result = indexed(condition, deadline);
+		}
+		record(key, strategy, condition, result.size(), System.nanoTime() - start);
+		return result;
+	}
+
+	private List<MemberTeamDto> indexed(MemberSearchCondition condition, QueryDeadline deadline) {
+		return deadline == null ? memberJpaRepository.search(condition) : memberJpaRepository.search(condition, deadline);
+	}
+
+	private List<MemberTeamDto> cached(MemberSearchCondition condition, QueryDeadline deadline) {
+		// 값을 이어 붙이면 구분자가 들어간 username 끼리 겹칠 수 있으므로 목록으로 비교한다.
+		List<Object> cacheKey = Arrays.asList(condition.shape(), condition.getUsername(), condition.getTeamName(),
+				condition.getAgeGoe(), condition.getAgeLoe());
+		// 조회 전에 버전을 읽어야 조회 중에 바뀐 데이터를 새 버전으로 저장하지 않는다.
+		String version = memberDataVersion.current();
+		CachedResult hit = cache.get(cacheKey);
+		if (hit != null && hit.version.equals(version)) {
+			return hit.result;
+		}
+		List<MemberTeamDto> result = Collections.unmodifiableList(indexed(condition, deadline));
+		// 쓰기 트랜잭션 안의 결과에는 커밋 전 데이터가 섞일 수 있다.
+		if (!TransactionSynchronizationManager.isActualTransactionActive()
+				|| TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			cache.put(cacheKey, new CachedResult(version, result));
+		}
+		return result;
+	}
+
+	private List<MemberTeamDto> parallelRangeScan(MemberSearchCondition condition, QueryDeadline deadline) {
+		long[] range = memberSqlRepository.idRange();
+		if (range == null) {
+			return Collections.emptyList();
+		}
+		long span = range[1] - range[0] + 1;
+		long step = (span + parallelism - 1) / parallelism;
+		// 모든 구간이 같은 deadline 을 쓰므로 취소하면 실행 중인 구간 쿼리도 함께 멈춘다.
+		QueryDeadline scanDeadline = deadline != null ? deadline : QueryDeadline.after(parallelTimeoutMillis);
+		List<CompletableFuture<List<MemberTeamDto>>> chunks = new ArrayList<>(parallelism);
+		for (long from = range[0]; from <= range[1]; from += step) {
+			long fromId = from;
+			long toId = Math.min(from + step, range[1] + 1);
+			chunks.add(CompletableFuture.supplyAsync(() -> memberSqlRepository.searchRange(condition, fromId, toId, scanDeadline), rangeScanner));
+		}
+		List<MemberTeamDto> result = new ArrayList<>();
+		try {
+			for (CompletableFuture<List<MemberTeamDto>> chunk : chunks) {
+				result.addAll(chunk.get(scanDeadline.remainingMillis(), TimeUnit.MILLISECONDS));
+			}
+		} catch (TimeoutException e) {
+			cancel(chunks, scanDeadline);
+			throw new QueryTimeoutException("parallel range scan did not finish in time", e);
+		} catch (InterruptedException e) {
+			cancel(chunks, scanDeadline);
+			Thread.currentThread().interrupt();
+			throw new QueryTimeoutException("parallel range scan interrupted", e);
+		} catch (ExecutionException e) {
+			cancel(chunks, scanDeadline);
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+		return result;
+	}
+
+	private static void cancel(List<CompletableFuture<List<MemberTeamDto>>> chunks, QueryDeadline deadline) {
+		deadline.cancel();
+		chunks.forEach(chunk -> chunk.cancel(true));
+	}
+
+	private void record(String key, Strategy strategy, MemberSearchCondition condition, long rows, long elapsedNanos) {
+		observed.computeIfAbsent(key, k -> new Observed()).add(rows, elapsedNanos);
+		Timer.builder("member.search")
+				.tag("strategy", strategy.name())
+				.tag("shape", condition.shape())
+				.register(meterRegistry)
+				.record(elapsedNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * 조건 모양 + 나이 범위. username, teamName 은 값이 아닌 유무만 본다.
+	 * 양쪽이 닫힌 범위는 폭(2의 거듭제곱 단위)으로, 한쪽만 열린 범위는 경계값(OPEN_RANGE_BUCKET 단위)으로 나눈다.
+	 * (ageGoe 10 과 ageGoe 90 은 결과 건수가 전혀 다르다)
+	 * 예) username, ageGoe+ageLoe:16, ageGoe:goe10, ageLoe:loe30
+	 */
+	static String key(MemberSearchCondition condition) {
+		String shape = condition.shape();
+		if (condition.getAgeGoe() == null && condition.getAgeLoe() == null) {
+			return shape;
+		}
+		if (condition.getAgeLoe() == null) {
+			return shape + ":goe" + Math.floorDiv(condition.getAgeGoe(), OPEN_RANGE_BUCKET) * OPEN_RANGE_BUCKET;
+		}
+		if (condition.getAgeGoe() == null) {
+			return shape + ":loe" + Math.floorDiv(condition.getAgeLoe(), OPEN_RANGE_BUCKET) * OPEN_RANGE_BUCKET;
+		}
+		long width = Math.max(0, (long) condition.getAgeLoe() - condition.getAgeGoe()) + 1;
+		return shape + ":" + Long.highestOneBit(width);
+	}
+
+	@PreDestroy
+	public void close() {
+		rangeScanner.shutdownNow();
+	}
+
+	private static class Observed {
+
+		// 조회 쪽은 락 없이 읽는다.
+		private volatile int samples;
+		private volatile double rows;
+		private volatile double nanos;
+
+		synchronized void add(long rows, long nanos) {
+			if (samples == 0) {
+				this.rows = rows;
+				this.nanos = nanos;
+			} else {
+				this.rows += ALPHA * (rows - this.rows);
+				this.nanos += ALPHA * (nanos - this.nanos);
+			}
+			samples++;
+		}
+
+	}
+
+	private static class CachedResult {
+
+		private final String version;
+		private final List<MemberTeamDto> result;
+
+		CachedResult(String version, List<MemberTeamDto> result) {
+			this.version = version;
+			this.result = result;
+		}
+
+	}
+
+}
@@ -0,0 +1,73 @@
+package study.querydsl.repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.querydsl.jpa.impl.JPAQuery;
+
+import lombok.RequiredArgsConstructor;
+import study.querydsl.entity.Member;
+
+/**
+ * Member 2차 캐시. (SecondLevelCacheConfig)
+ *
+ * username 조회는 결과 id 목록을 USERNAME_REGION 쿼리 캐시에, 회원은 엔티티 캐시에 두므로
+ * 같은 username 을 다시 찾으면 쿼리 없이 끝난다.
+ * username 은 유일하지 않아 @NaturalId 를 쓸 수 없으므로 쿼리 캐시로 username -> id 색인을 대신한다.
+ *
+ * Hibernate 를 거친 쓰기(flush, JPQL bulk)는 Hibernate 가 알아서 무효화한다.
+ * querydsl-sql, JdbcTemplate 처럼 Hibernate 를 거치지 않는 쓰기 뒤에는 evict() 를 불러야 한다.
+ */
+@Component
+@RequiredArgsConstructor
+public class MemberCache {
+
+	public static final String USERNAME_REGION = "member-username";
+
+	private final EntityManager em;
+
+	// FETCH_JOIN 은 캐시에서 꺼낸 회원의 team 이 채워지지 않으므로 캐시하지 않는다.
+	public <T> JPAQuery<T> byUsername(JPAQuery<T> query, MemberFetchPlan fetchPlan) {
+		if (fetchPlan != MemberFetchPlan.FETCH_JOIN) {
+			query.setHint(QueryHints.CACHEABLE, true);
+			query.setHint(QueryHints.CACHE_REGION, USERNAME_REGION);
+		}
+		return query;
+	}
+
+	public <T> TypedQuery<T> byUsername(TypedQuery<T> query, MemberFetchPlan fetchPlan) {
+		if (fetchPlan != MemberFetchPlan.FETCH_JOIN) {
+			query.setHint(QueryHints.CACHEABLE, true);
+			query.setHint(QueryHints.CACHE_REGION, USERNAME_REGION);
+		}
+		return query;
+	}
+
+	/**
+	 * 트랜잭션 안이면 커밋 후에 한 번 더 비운다. (커밋 전에 다른 트랜잭션이 예전 값으로 다시 채우는 것을 막기 위해)
+	 */
+	public void evict() {
+		evictNow();
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int status) {
+					evictNow();
+				}
+			});
+		}
+	}
+
+	private void evictNow() {
+		SessionFactory sessionFactory = em.getEntityManagerFactory().unwrap(SessionFactory.class);
+		sessionFactory.getCache().evictEntityData(Member.class);
+		sessionFactory.getCache().evictQueryRegion(USERNAME_REGION);
+	}
+
+}
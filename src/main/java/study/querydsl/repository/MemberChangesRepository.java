@@ -0,0 +1,130 @@
+package study.querydsl.repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import study.querydsl.dto.MemberChangesDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.QMemberTombstone;
+import study.querydsl.entity.QTeam;
+
+/**
+ * updated_at / member_tombstone 기반 변경분 조회. (study.querydsl.entity.ChangeTracking)
+ *
+ * token 은 DB 시각(마이크로초)이다. 응답 시점의 DB 시각에서 settle-ms 를 뺀 시각(cutoff)까지만 내려주고 그것을 다음 token 으로 준다.
+ * updated_at 은 쓰기 트랜잭션의 시작 시각이라, settle-ms 보다 오래 걸리는 쓰기 트랜잭션이 없다면
+ * cutoff 이전에 시작한 트랜잭션은 모두 커밋되어 보이는 상태다. 따라서 since ~ cutoff 구간은 다시 볼 필요가 없다.
+ *
+ * 조건이 있는 경우 바뀐 회원 중 조건에 맞는 것은 upserts, 맞지 않는 것은 removed 로 나눈다.
+ * (조건에서 빠져나간 회원을 받은 쪽이 지울 수 있도록)
+ */
+@Repository
+@Transactional(readOnly = true)
+public class MemberChangesRepository {
+
+	private final JPAQueryFactory queryFactory;
+	private final MemberJpaRepository memberJpaRepository;
+	private final JdbcTemplate jdbcTemplate;
+	private final long settleMillis;
+
+	public MemberChangesRepository(EntityManager em, MemberJpaRepository memberJpaRepository, JdbcTemplate jdbcTemplate,
+			@Value("${querydsl.changes.settle-ms:5000}") long settleMillis) {
+		this.queryFactory = new JPAQueryFactory(em);
+		this.memberJpaRepository = memberJpaRepository;
+		this.jdbcTemplate = jdbcTemplate;
+		this.settleMillis = settleMillis;
+	}
+
+	/**
+	 * since 가 없으면 조건에 맞는 전체를 upserts 로 준다.
+	 */
+	public MemberChangesDto changesSince(MemberSearchCondition condition, Long since) {
+		// 조회보다 먼저 정해야 cutoff 이전 변경분이 조회에서 빠지지 않는다.
+		Instant cutoff = jdbcTemplate.queryForObject("select current_timestamp", Timestamp.class)
+				.toInstant().minusMillis(settleMillis);
+
+		if (since == null) {
+			return new MemberChangesDto(toToken(cutoff), memberJpaRepository.search(condition), Collections.emptyList());
+		}
+		Instant from = fromToken(since);
+		if (!from.isBefore(cutoff)) {
+			return new MemberChangesDto(since, Collections.emptyList(), Collections.emptyList());
+		}
+
+		QMember m = QMember.member;
+		QTeam t = QTeam.team;
+		QMemberTombstone mt = QMemberTombstone.memberTombstone;
+
+		// or 로 묶으면 updated_at 인덱스를 못 타므로 회원 변경, 팀 변경을 따로 읽어 합친다.
+		Map<Long, MemberTeamDto> changed = new LinkedHashMap<>();
+		for (MemberTeamDto dto : changedMembers(m.updatedAt.gt(from).and(m.updatedAt.loe(cutoff)))) {
+			changed.put(dto.getMemberId(), dto);
+		}
+		for (MemberTeamDto dto : changedMembers(t.updatedAt.gt(from).and(t.updatedAt.loe(cutoff)))) {
+			changed.put(dto.getMemberId(), dto);
+		}
+
+		List<MemberTeamDto> upserts = new ArrayList<>();
+		List<Long> removed = new ArrayList<>();
+		for (MemberTeamDto dto : changed.values()) {
+			if (condition.matches(dto)) {
+				upserts.add(dto);
+			} else {
+				removed.add(dto.getMemberId());
+			}
+		}
+		removed.addAll(queryFactory
+				.select(mt.memberId)
+				.from(mt)
+				.where(mt.deletedAt.gt(from), mt.deletedAt.loe(cutoff))
+				.fetch());
+
+		return new MemberChangesDto(toToken(cutoff), upserts, removed);
+	}
+
+	private List<MemberTeamDto> changedMembers(BooleanExpression changed) {
+		QMember m = QMember.member;
+		QTeam t = QTeam.team;
+
+		return queryFactory
+				.select(new QMemberTeamDto(
+						m.id.as("memberId"),
+						m.username,
+						m.age,
+						t.id.as("teamId"),
+						t.name.as("teamName")
+						))
+				.from(m)
+				.leftJoin(m.team, t)
+				.where(changed)
+				.fetch();
+	}
+
+	private static long toToken(Instant instant) {
+		return TimeUnit.SECONDS.toMicros(instant.getEpochSecond()) + TimeUnit.NANOSECONDS.toMicros(instant.getNano());
+	}
+
+	private static Instant fromToken(long token) {
+		return Instant.ofEpochSecond(TimeUnit.MICROSECONDS.toSeconds(token), TimeUnit.MICROSECONDS.toNanos(token % 1_000_000));
+	}
+
+}
@@ -0,0 +1,94 @@
+package study.querydsl.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.TypedQuery;
+
+import org.hibernate.Hibernate;
+import org.hibernate.jpa.QueryHints;
+
+import com.querydsl.jpa.impl.JPAQuery;
+
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+/**
+ * finder 에서 Member.team 을 어떻게 가져올지 (Member.team 은 LAZY)
+ * 
+ * PROXY : 프록시로 둔다. 팀에 접근하면 팀마다 쿼리가 나간다. (기본)
+ * FETCH_JOIN : Member.team entity graph 로 회원과 팀을 join 한 번에 가져온다.
+ * BATCH : 회원을 먼저 조회한 뒤 팀 id 를 모아 in 쿼리 한 번(BATCH_SIZE 단위)으로 가져온다.
+ *         회원이 많고 팀이 적을 때 join 으로 팀 컬럼이 반복되는 것을 피한다.
+ */
+public enum MemberFetchPlan {
+	
+	PROXY,
+	FETCH_JOIN,
+	BATCH;
+	
+	public static final String TEAM_GRAPH = "Member.team";
+	
+	static final int BATCH_SIZE = 1000;
+	
+	<T> JPAQuery<T> apply(JPAQuery<T> query, EntityManager em) {
+		if (this == FETCH_JOIN) {
+			query.setHint(QueryHints.HINT_LOADGRAPH, em.getEntityGraph(TEAM_GRAPH));
+		}
+		return query;
+	}
+	
+	<T> TypedQuery<T> apply(TypedQuery<T> query, EntityManager em) {
+		if (this == FETCH_JOIN) {
+			query.setHint(QueryHints.HINT_LOADGRAPH, em.getEntityGraph(TEAM_GRAPH));
+		}
+		return query;
+	}
+	
+	Map<String, Object> findHints(EntityManager em) {
+		if (this == FETCH_JOIN) {
+			return Collections.singletonMap(QueryHints.HINT_LOADGRAPH, em.getEntityGraph(TEAM_GRAPH));
+		}
+		return Collections.emptyMap();
+	}
+	
+	/**
+	 * BATCH : 아직 초기화되지 않은 팀 프록시를 모아 한 번에 로딩한다.
+	 * 로딩된 팀은 영속성 컨텍스트에 올라오므로 프록시 초기화는 추가 쿼리 없이 끝난다.
+	 */
+	List<Member> complete(List<Member> members, EntityManager em) {
+		if (this != BATCH) {
+			return members;
+		}
+		
+		PersistenceUnitUtil util = em.getEntityManagerFactory().getPersistenceUnitUtil();
+		Set<Object> teamIds = new LinkedHashSet<>();
+		for (Member member : members) {
+			Team team = member.getTeam();
+			if (team != null && !Hibernate.isInitialized(team)) {
+				teamIds.add(util.getIdentifier(team));
+			}
+		}
+		
+		List<Object> ids = new ArrayList<>(teamIds);
+		for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+			em.createQuery("select t from Team t where t.id in :ids", Team.class)
+					.setParameter("ids", ids.subList(from, Math.min(from + BATCH_SIZE, ids.size())))
+					.getResultList();
+		}
+		// in 쿼리로 올라온 팀은 영속성 컨텍스트에만 있고, 회원이 들고 있는 프록시는 아직 비어 있다.
+		// 트랜잭션이 끝난 뒤에도 팀에 접근할 수 있도록 프록시를 연결해 둔다.
+		// 대상이 이미 영속성 컨텍스트에 있으므로 쿼리는 나가지 않고, 같은 팀의 회원들은 프록시 하나를 공유한다.
+		for (Member member : members) {
+			Hibernate.initialize(member.getTeam());
+		}
+		return members;
+	}
+	
+}
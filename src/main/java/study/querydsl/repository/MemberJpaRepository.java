@@ -1,72 +1,127 @@
 package study.querydsl.repository;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.OrderSpecifier;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
-import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.dto.MemberTeamProjection;
+import study.querydsl.dto.MemberTeamPage;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.QTeam;
+import study.querydsl.jdbc.TableStatistics;
+import study.querydsl.jfr.MemberQueryEvent;
 
 @Repository
+@Transactional(readOnly = true)
 public class MemberJpaRepository {
 
+	private static final String REPOSITORY = "MemberJpaRepository";
+	
+	// searchPage 의 sort 로 쓸 수 있는 MemberTeamDto 속성
+	private static final Map<String, ComparableExpressionBase<?>> SORTABLE = new LinkedHashMap<>();
+	static {
+		SORTABLE.put("memberId", QMember.member.id);
+		SORTABLE.put("username", QMember.member.username);
+		SORTABLE.put("age", QMember.member.age);
+		SORTABLE.put("teamId", QTeam.team.id);
+		SORTABLE.put("teamName", QTeam.team.name);
+	}
+
 	private final EntityManager em;
 	private final JPAQueryFactory queryFactory;
+	private final ReadOnlyQueries readOnlyQueries;
+	private final TableStatistics tableStatistics;
+	private final MemberCache memberCache;
+	private final UsernameFilter usernameFilter;
 	
-	public MemberJpaRepository(EntityManager em) {
+	public MemberJpaRepository(EntityManager em, ReadOnlyQueries readOnlyQueries, TableStatistics tableStatistics,
+			MemberCache memberCache, UsernameFilter usernameFilter) {
 		this.em = em;
 		this.queryFactory = new JPAQueryFactory(em);
+		this.readOnlyQueries = readOnlyQueries;
+		this.tableStatistics = tableStatistics;
+		this.memberCache = memberCache;
+		this.usernameFilter = usernameFilter;
 	}
 	
+	@Transactional
 	public void save(Member member) {
 		em.persist(member);
 	}
 	
 	public Optional<Member> findById(Long id){
-		Member findMember = em.find(Member.class, id);
+		return findById(id, MemberFetchPlan.PROXY);
+	}
+	
+	public Optional<Member> findById(Long id, MemberFetchPlan fetchPlan){
+		Member findMember = em.find(Member.class, id, fetchPlan.findHints(em));
+		if (findMember != null) {
+			fetchPlan.complete(Collections.singletonList(findMember), em);
+		}
 		return Optional.ofNullable(findMember);
-		
 	}
 	
 	public List<Member> findAll() {
-		return em.createQuery("select m from Member m", Member.class)
-				.getResultList();
+		return findAll(MemberFetchPlan.PROXY);
+	}
+	
+	public List<Member> findAll(MemberFetchPlan fetchPlan) {
+		return MemberQueryEvent.record(REPOSITORY, "findAll", fetchPlan.name(), () -> {
+			TypedQuery<Member> query = readOnlyQueries.apply(em.createQuery("select m from Member m", Member.class));
+			return fetchPlan.complete(fetchPlan.apply(query, em).getResultList(), em);
+		});
 	}
 	
 	public List<Member> findAll_Querydsl(){
 		QMember m = QMember.member;
 		
-		return queryFactory
-				.selectFrom(m)
+		return readOnlyQueries.apply(queryFactory
+				.selectFrom(m))
 				.fetch();
 	}	
 	
 	public List<Member> findByUsername(String username) {
-		return em.createQuery("select m from Member m "
-							+ "where m.username = :username", Member.class)
-				.setParameter("username", username)
-				.getResultList();
+		return findByUsername(username, MemberFetchPlan.PROXY);
+	}
+	
+	public List<Member> findByUsername(String username, MemberFetchPlan fetchPlan) {
+		return MemberQueryEvent.record(REPOSITORY, "findByUsername", fetchPlan.name(), () -> usernameFilter.find(username, () -> {
+			TypedQuery<Member> query = readOnlyQueries.apply(em.createQuery("select m from Member m "
+								+ "where m.username = :username", Member.class))
+					.setParameter("username", username);
+			return fetchPlan.complete(fetchPlan.apply(memberCache.byUsername(query, fetchPlan), em).getResultList(), em);
+		}));
 	}
 	
 	public List<Member> findByUsername_Querydsl(String username) {
 		QMember m = QMember.member;
 		
-		return queryFactory
+		return usernameFilter.find(username, () -> memberCache.byUsername(readOnlyQueries.apply(queryFactory
 				.selectFrom(m)
-				.where(m.username.eq(username))
-				.fetch();
+				.where(m.username.eq(username))), MemberFetchPlan.PROXY)
+				.fetch());
 	}
 	
 	public List<MemberTeamDto> searchByBuilder(MemberSearchCondition searchCondition){
@@ -88,8 +143,8 @@ public class MemberJpaRepository {
 			builder.and(m.age.loe(searchCondition.getAgeLoe()));
 		}
 		
-		return queryFactory
-				.select(new QMemberTeamDto(
+		JPAQuery<MemberTeamDto> query = queryFactory
+				.select(new MemberTeamProjection(
 						m.id.as("memberId"),
 						m.username,
 						m.age,
@@ -98,17 +153,93 @@ public class MemberJpaRepository {
 						))
 				.from(m)
 				.leftJoin(m.team, t)
-				.where(builder)
-				.fetch();
+				.where(builder);
+		
+		return readOnlyQueries.apply(query).fetch();
 	}
 	
 	
 	public List<MemberTeamDto> search(MemberSearchCondition condition){
+		return MemberQueryEvent.record(REPOSITORY, "search", condition.shape(), () -> searchQuery(condition).fetch());
+	}
+	
+	public List<MemberTeamDto> search(MemberSearchCondition condition, QueryDeadline deadline) {
+		return MemberQueryEvent.record(REPOSITORY, "search", condition.shape(),
+				() -> deadline.execute(em, () -> deadline.apply(searchQuery(condition)).fetch()));
+	}
+	
+	/**
+	 * approximateTotal 이고 조건이 없으면 count(*) 대신 member 테이블 통계로 전체 건수를 추정한다. (left join 이므로 member 건수와 같다)
+	 * 조건이 있으면 정확한 count 를 쓴다. 마지막 페이지처럼 content 만으로 전체 건수를 알 수 있으면 count 쿼리를 생략한다.
+	 * 
+	 * pageable 의 sort 는 SORTABLE 속성만 받고, 페이지가 흔들리지 않도록 마지막에 memberId 순을 붙인다.
+	 * @throws IllegalArgumentException 정렬할 수 없는 속성일 때
+	 */
+	public MemberTeamPage searchPage(MemberSearchCondition condition, Pageable pageable, boolean approximateTotal) {
+		return MemberQueryEvent.record(REPOSITORY, "searchPage", condition.shape(),
+				() -> searchPageQuery(condition, pageable, approximateTotal), MemberTeamPage::getNumberOfElements);
+	}
+	
+	private MemberTeamPage searchPageQuery(MemberSearchCondition condition, Pageable pageable, boolean approximateTotal) {
+		List<MemberTeamDto> content = searchQuery(condition)
+				.orderBy(pageOrder(pageable.getSort()))
+				.offset(pageable.getOffset())
+				.limit(pageable.getPageSize())
+				.fetch();
+		
+		if (pageable.getOffset() == 0 && content.size() < pageable.getPageSize()) {
+			return new MemberTeamPage(content, pageable, content.size(), false);
+		}
+		if (approximateTotal && condition.isEmpty()) {
+			long estimate = tableStatistics.estimatedRowCount("member");
+			// 통계가 늦게 따라오더라도 이미 읽은 페이지보다 작게 답하지 않는다.
+			return new MemberTeamPage(content, pageable, Math.max(estimate, pageable.getOffset() + content.size()), true);
+		}
+		return new MemberTeamPage(content, pageable, searchCount(condition), false);
+	}
+	
+	private OrderSpecifier<?>[] pageOrder(Sort sort) {
+		List<OrderSpecifier<?>> orders = new ArrayList<>();
+		for (Sort.Order order : sort) {
+			ComparableExpressionBase<?> property = SORTABLE.get(order.getProperty());
+			if (property == null) {
+				throw new IllegalArgumentException("cannot sort by " + order.getProperty() + ", sortable: " + SORTABLE.keySet());
+			}
+			OrderSpecifier<?> orderSpecifier = order.isAscending() ? property.asc() : property.desc();
+			if (order.getNullHandling() == Sort.NullHandling.NULLS_FIRST) {
+				orderSpecifier = orderSpecifier.nullsFirst();
+			} else if (order.getNullHandling() == Sort.NullHandling.NULLS_LAST) {
+				orderSpecifier = orderSpecifier.nullsLast();
+			}
+			orders.add(orderSpecifier);
+		}
+		orders.add(QMember.member.id.asc());
+		return orders.toArray(new OrderSpecifier<?>[0]);
+	}
+	
+	private long searchCount(MemberSearchCondition condition) {
+		QMember m = QMember.member;
+		QTeam t = QTeam.team;
+		
+		return readOnlyQueries.apply(queryFactory
+				.select(m.count())
+				.from(m)
+				.leftJoin(m.team, t)
+				.where(
+						usernameEq(condition.getUsername()),
+						teamNameEq(condition.getTeamName()),
+						ageGoe(condition.getAgeGoe()),
+						ageLoe(condition.getAgeLoe())
+						))
+				.fetchOne();
+	}
+	
+	private JPAQuery<MemberTeamDto> searchQuery(MemberSearchCondition condition) {
 		QMember m = QMember.member;
 		QTeam t = QTeam.team;
 		
-		return queryFactory
-				.select(new QMemberTeamDto(
+		JPAQuery<MemberTeamDto> query = queryFactory
+				.select(new MemberTeamProjection(
 						m.id.as("memberId"),
 						m.username,
 						m.age,
@@ -122,8 +253,9 @@ public class MemberJpaRepository {
 						teamNameEq(condition.getTeamName()),
 						ageGoe(condition.getAgeGoe()),
 						ageLoe(condition.getAgeLoe())
-						)
-				.fetch();
+						);
+		
+		return readOnlyQueries.apply(query);
 	}
 
 	private BooleanExpression usernameEq(String username) {
@@ -1,10 +1,22 @@
 package study.querydsl.repository;
 
 import java.util.List;
+import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
 import study.querydsl.entity.Member;
 
 public interface MemberRepository extends JpaRepository<Member, Long>, MemberRepositoryCustom {
 
+	// 아래 finder 들은 쿼리 메서드 / SimpleJpaRepository 대신 MemberRepositoryImpl 의 구현이 호출된다. (ReadOnlyQueries 적용)
+	@Override
+	List<Member> findAll();
+	
 	List<Member> findByUsername(String username);
+	
+	// fetchPlan : team 을 프록시 / fetch join / batch 중 어떻게 가져올지 (MemberFetchPlan)
+	List<Member> findAll(MemberFetchPlan fetchPlan);
+	
+	List<Member> findByUsername(String username, MemberFetchPlan fetchPlan);
+	
+	Optional<Member> findById(Long id, MemberFetchPlan fetchPlan);
 }
@@ -1,5 +1,6 @@
 package study.querydsl.repository;
 
+import java.util.Collection;
 import java.util.List;
 
 import study.querydsl.dto.MemberSearchCondition;
@@ -8,4 +9,25 @@ import study.querydsl.dto.MemberTeamDto;
 public interface MemberRepositoryCustom {
 	
 	List<MemberTeamDto> search(MemberSearchCondition condition);
+	
+	/**
+	 * deadline 까지 끝나지 않거나 deadline.cancel() 되면 실행 중인 쿼리를 취소하고 QueryTimeoutException 을 던진다.
+	 */
+	List<MemberTeamDto> search(MemberSearchCondition condition, QueryDeadline deadline);
+	
+	/**
+	 * 회원들의 팀을 한 번의 bulk update 로 변경한다. team.members 는 로딩하지 않는다.
+	 * 샤딩된 저장소(ShardedMemberRepository)는 팀과 같은 샤드의 회원만 옮길 수 있다.
+	 * @return 변경된 회원 수
+	 * @throws IllegalArgumentException 샤딩된 저장소에서 팀과 다른 샤드의 회원이 섞여 있을 때
+	 */
+	long reassignTeam(Collection<Long> memberIds, Long teamId);
+	
+	/**
+	 * 팀 이름과 소속 회원의 team_name 을 한 트랜잭션에서 bulk update 로 바꾼다.
+	 * 샤딩된 저장소(ShardedMemberRepository)는 새 이름이 같은 샤드로 라우팅될 때만 바꿀 수 있다.
+	 * @return team_name 이 바뀐 회원 수
+	 * @throws IllegalArgumentException 샤딩된 저장소에서 새 이름이 다른 샤드에 속할 때
+	 */
+	long renameTeam(Long teamId, String name);
 }
@@ -1,35 +1,125 @@
 package study.querydsl.repository;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
 
 import javax.persistence.EntityManager;
 
+import org.hibernate.Hibernate;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
-import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.dto.MemberTeamProjection;
+import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.QTeam;
+import study.querydsl.entity.Team;
+import study.querydsl.jfr.MemberQueryEvent;
 
+@Transactional(readOnly = true)
 public class MemberRepositoryImpl implements MemberRepositoryCustom{
 
+	private static final String REPOSITORY = "MemberRepository";
+
+	private final EntityManager em;
 	private final JPAQueryFactory queryFactory;
+	private final ReadOnlyQueries readOnlyQueries;
+	private final boolean denormalizedTeamName;
+	private final MemberCache memberCache;
+	private final UsernameFilter usernameFilter;
 	
-	public MemberRepositoryImpl(EntityManager em) {
+	/**
+	 * denormalizedTeamName : search 가 team 을 조인하지 않고 member.team_name 으로 거르고 내려준다.
+	 */
+	public MemberRepositoryImpl(EntityManager em, ReadOnlyQueries readOnlyQueries, MemberCache memberCache, UsernameFilter usernameFilter,
+			@Value("${querydsl.search.denormalized-team-name:false}") boolean denormalizedTeamName) {
+		this.em = em;
 		this.queryFactory = new JPAQueryFactory(em);
+		this.readOnlyQueries = readOnlyQueries;
+		this.denormalizedTeamName = denormalizedTeamName;
+		this.memberCache = memberCache;
+		this.usernameFilter = usernameFilter;
+	}
+	
+	// MemberRepository.findAll
+	public List<Member> findAll() {
+		return findAll(MemberFetchPlan.PROXY);
+	}
+	
+	// MemberRepository.findAll
+	public List<Member> findAll(MemberFetchPlan fetchPlan) {
+		QMember m = QMember.member;
+		
+		return MemberQueryEvent.record(REPOSITORY, "findAll", fetchPlan.name(), () -> {
+			JPAQuery<Member> query = readOnlyQueries.apply(queryFactory
+					.selectFrom(m));
+			return fetchPlan.complete(fetchPlan.apply(query, em).fetch(), em);
+		});
+	}
+	
+	// MemberRepository.findByUsername
+	public List<Member> findByUsername(String username) {
+		return findByUsername(username, MemberFetchPlan.PROXY);
+	}
+	
+	// MemberRepository.findByUsername
+	public List<Member> findByUsername(String username, MemberFetchPlan fetchPlan) {
+		QMember m = QMember.member;
+		
+		return MemberQueryEvent.record(REPOSITORY, "findByUsername", fetchPlan.name(), () -> usernameFilter.find(username, () -> {
+			JPAQuery<Member> query = readOnlyQueries.apply(queryFactory
+					.selectFrom(m)
+					.where(m.username.eq(username)));
+			return fetchPlan.complete(fetchPlan.apply(memberCache.byUsername(query, fetchPlan), em).fetch(), em);
+		}));
+	}
+	
+	// MemberRepository.findById
+	public Optional<Member> findById(Long id, MemberFetchPlan fetchPlan) {
+		Member findMember = em.find(Member.class, id, fetchPlan.findHints(em));
+		if (findMember != null) {
+			fetchPlan.complete(Collections.singletonList(findMember), em);
+		}
+		return Optional.ofNullable(findMember);
 	}
 	
 	@Override
 	public List<MemberTeamDto> search(MemberSearchCondition condition) {
+		return MemberQueryEvent.record(REPOSITORY, "search", condition.shape(), () -> searchQuery(condition).fetch());
+	}
+	
+	@Override
+	public List<MemberTeamDto> search(MemberSearchCondition condition, QueryDeadline deadline) {
+		return MemberQueryEvent.record(REPOSITORY, "search", condition.shape(),
+				() -> deadline.execute(em, () -> deadline.apply(searchQuery(condition)).fetch()));
+	}
+	
+	private JPAQuery<MemberTeamDto> searchQuery(MemberSearchCondition condition) {
+		if (denormalizedTeamName) {
+			return memberOnlySearchQuery(condition);
+		}
+		
 		QMember m = QMember.member;
 		QTeam t = QTeam.team;
 		
-		return queryFactory
-				.select(new QMemberTeamDto(
+		JPAQuery<MemberTeamDto> query = queryFactory
+				.select(new MemberTeamProjection(
 						m.id.as("memberId"),
 						m.username,
 						m.age,
@@ -43,8 +133,101 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom{
 						teamNameEq(condition.getTeamName()),
 						ageGoe(condition.getAgeGoe()),
 						ageLoe(condition.getAgeLoe())
-						)
-				.fetch();
+						);
+		
+		return readOnlyQueries.apply(query);
+	}
+	
+	// m.team.id 는 member.team_id 컬럼이므로 조인이 생기지 않는다.
+	private JPAQuery<MemberTeamDto> memberOnlySearchQuery(MemberSearchCondition condition) {
+		QMember m = QMember.member;
+		
+		JPAQuery<MemberTeamDto> query = queryFactory
+				.select(new MemberTeamProjection(
+						m.id.as("memberId"),
+						m.username,
+						m.age,
+						m.team.id.as("teamId"),
+						m.teamName
+						))
+				.from(m)
+				.where(
+						usernameEq(condition.getUsername()),
+						memberTeamNameEq(condition.getTeamName()),
+						ageGoe(condition.getAgeGoe()),
+						ageLoe(condition.getAgeLoe())
+						);
+		
+		return readOnlyQueries.apply(query);
+	}
+
+	@Override
+	@Transactional
+	public long reassignTeam(Collection<Long> memberIds, Long teamId) {
+		QMember m = QMember.member;
+		QTeam t = QTeam.team;
+		Team team = em.getReference(Team.class, teamId);
+		
+		long count = queryFactory
+				.update(m)
+				.set(m.team, team)
+				.set(m.teamName, JPAExpressions.select(t.name).from(t).where(t.id.eq(teamId)))
+				.where(m.id.in(memberIds))
+				.execute();
+		
+		// 영속성 컨텍스트에 이미 올라와 있는 회원만 DB 와 맞춘다. 조회는 이 회원들에 한해서만 일어난다.
+		SessionImplementor session = em.unwrap(SessionImplementor.class);
+		EntityPersister persister = session.getFactory().getMetamodel().entityPersister(Member.class);
+		for (Long memberId : memberIds) {
+			Member member = (Member) session.getPersistenceContext().getEntity(session.generateEntityKey(memberId, persister));
+			if (member == null) {
+				continue;
+			}
+			
+			Team oldTeam = member.getTeam();
+			em.refresh(member);
+			if (oldTeam != null && Hibernate.isInitialized(oldTeam) && Hibernate.isInitialized(oldTeam.getMembers())) {
+				oldTeam.getMembers().remove(member);
+			}
+			if (Hibernate.isInitialized(team) && Hibernate.isInitialized(team.getMembers())) {
+				team.getMembers().add(member);
+			}
+		}
+		return count;
+	}
+	
+	@Override
+	@Transactional
+	public long renameTeam(Long teamId, String name) {
+		QMember m = QMember.member;
+		QTeam t = QTeam.team;
+		
+		queryFactory
+				.update(t)
+				.set(t.name, name)
+				.where(t.id.eq(teamId))
+				.execute();
+		long count = queryFactory
+				.update(m)
+				.set(m.teamName, name)
+				.where(m.team.id.eq(teamId))
+				.execute();
+		
+		// 이미 올라와 있는 팀과 그 팀 회원만 DB 와 맞춘다. (이후 flush 가 예전 이름으로 덮어쓰지 않도록)
+		managed(Team.class, team -> teamId.equals(team.getId())).forEach(em::refresh);
+		managed(Member.class, member -> member.getTeam() != null && teamId.equals(member.getTeam().getId())).forEach(em::refresh);
+		return count;
+	}
+	
+	// 프록시의 getId() 는 초기화를 일으키지 않는다.
+	private <T> List<T> managed(Class<T> type, Predicate<T> filter) {
+		List<T> result = new ArrayList<>();
+		for (Map.Entry<Object, EntityEntry> entry : em.unwrap(SessionImplementor.class).getPersistenceContext().reentrantSafeEntityEntries()) {
+			if (type.isInstance(entry.getKey()) && filter.test(type.cast(entry.getKey()))) {
+				result.add(type.cast(entry.getKey()));
+			}
+		}
+		return result;
 	}
 
 	private BooleanExpression usernameEq(String username) {
@@ -57,6 +240,11 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom{
 		return StringUtils.hasText(teamName) ? t.name.eq(teamName) : null;
 	}
 
+	private BooleanExpression memberTeamNameEq(String teamName) {
+		QMember m = QMember.member;
+		return StringUtils.hasText(teamName) ? m.teamName.eq(teamName) : null;
+	}
+
 	private BooleanExpression ageGoe(Integer ageGoe) {
 		QMember m = QMember.member;
 		return ageGoe != null ? m.age.goe(ageGoe) : null;
@@ -0,0 +1,276 @@
+package study.querydsl.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityNotFoundException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import lombok.extern.slf4j.Slf4j;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.Team;
+
+/**
+ * group commit 쓰기 경로. (querydsl.write-pipeline.enabled=true)
+ * 
+ * 여러 요청의 save / 나이, 팀 변경을 큐에 모았다가 interval-ms 마다 하나의 트랜잭션으로 커밋한다.
+ * 같은 회원에 대한 변경은 합쳐진다.
+ *   - updateAge, changeTeam : 마지막 값만 반영 (last-write-wins)
+ *   - addAge : 증가분을 합산 (age = age + 1 같은 갱신)
+ * 
+ * 반환된 future 는 해당 변경이 커밋된 뒤에 완료된다.
+ * 묶음 트랜잭션이 실패하면 변경을 도착 순서대로 하나씩 다시 커밋해, 실패한 변경의 future 만 예외로 끝낸다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "querydsl.write-pipeline.enabled", havingValue = "true")
+public class MemberWritePipeline {
+
+	private final EntityManager em;
+	private final JPAQueryFactory queryFactory;
+	private final TransactionTemplate transactionTemplate;
+	private final int maxBatchSize;
+	
+	private final BlockingQueue<WriteOp> queue;
+	private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "member-write-pipeline");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	public MemberWritePipeline(EntityManager em, PlatformTransactionManager transactionManager,
+			@Value("${querydsl.write-pipeline.interval-ms:5}") long intervalMillis,
+			@Value("${querydsl.write-pipeline.max-batch-size:1000}") int maxBatchSize,
+			@Value("${querydsl.write-pipeline.queue-capacity:100000}") int queueCapacity) {
+		this.em = em;
+		this.queryFactory = new JPAQueryFactory(em);
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.maxBatchSize = maxBatchSize;
+		this.queue = new LinkedBlockingQueue<>(queueCapacity);
+		
+		flusher.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	public CompletableFuture<Member> save(Member member) {
+		return enqueue(new WriteOp(WriteType.SAVE, null, member, 0, null)).thenApply(v -> member);
+	}
+	
+	public CompletableFuture<Void> updateAge(Long memberId, int age) {
+		return enqueue(new WriteOp(WriteType.UPDATE_AGE, memberId, null, age, null));
+	}
+	
+	public CompletableFuture<Void> addAge(Long memberId, int delta) {
+		return enqueue(new WriteOp(WriteType.ADD_AGE, memberId, null, delta, null));
+	}
+	
+	public CompletableFuture<Void> changeTeam(Long memberId, Long teamId) {
+		return enqueue(new WriteOp(WriteType.CHANGE_TEAM, memberId, null, 0, teamId));
+	}
+	
+	private CompletableFuture<Void> enqueue(WriteOp op) {
+		if (!queue.offer(op)) {
+			op.committed.completeExceptionally(new RejectedExecutionException("member write queue is full"));
+		}
+		return op.committed;
+	}
+	
+	void flush() {
+		List<WriteOp> batch = new ArrayList<>(maxBatchSize);
+		while (queue.drainTo(batch, maxBatchSize) > 0) {
+			commit(batch);
+			batch.clear();
+		}
+	}
+	
+	private void commit(List<WriteOp> batch) {
+		try {
+			commitTogether(batch);
+		} catch (RuntimeException e) {
+			if (batch.size() == 1) {
+				batch.get(0).committed.completeExceptionally(e);
+				return;
+			}
+			log.warn("member write batch failed, retrying {} writes one by one", batch.size(), e);
+			batch.forEach(this::commitAlone);
+			return;
+		}
+		
+		batch.forEach(op -> op.committed.complete(null));
+	}
+	
+	private void commitAlone(WriteOp op) {
+		if (op.type == WriteType.SAVE) {
+			// 롤백된 트랜잭션에서 받은 id 는 버린다. (id 가 있으면 persist 가 detached 로 본다)
+			op.member.setId(null);
+		}
+		try {
+			commitTogether(Collections.singletonList(op));
+		} catch (RuntimeException e) {
+			log.debug("member write failed: {} {}", op.type, op.memberId, e);
+			op.committed.completeExceptionally(e);
+			return;
+		}
+		op.committed.complete(null);
+	}
+	
+	private void commitTogether(List<WriteOp> batch) {
+		List<WriteOp> saves = new ArrayList<>();
+		Map<Long, MemberUpdate> updates = new LinkedHashMap<>();
+		for (WriteOp op : batch) {
+			if (op.type == WriteType.SAVE) {
+				saves.add(op);
+			} else {
+				updates.computeIfAbsent(op.memberId, MemberUpdate::new).merge(op);
+			}
+		}
+		
+		transactionTemplate.executeWithoutResult(status -> {
+			saves.forEach(op -> em.persist(op.member));
+			applyUpdates(updates.values());
+		});
+	}
+	
+	/**
+	 * 1. 절대값(나이, 팀) 변경은 대상 회원을 한 번에 조회해 변경감지 + JDBC batch update 로 반영
+	 * 2. 증가분만 있는 회원은 증가분이 같은 것끼리 묶어 bulk update (age = age + delta)
+	 */
+	private void applyUpdates(Collection<MemberUpdate> updates) {
+		QMember m = QMember.member;
+		
+		List<Long> loadIds = updates.stream()
+				.filter(MemberUpdate::needsEntity)
+				.map(update -> update.memberId)
+				.collect(Collectors.toList());
+		
+		Map<Long, Member> members = new HashMap<>();
+		if (!loadIds.isEmpty()) {
+			queryFactory.selectFrom(m)
+					.where(m.id.in(loadIds))
+					.fetch()
+					.forEach(member -> members.put(member.getId(), member));
+		}
+		
+		Map<Integer, List<Long>> incrementsByDelta = new HashMap<>();
+		for (MemberUpdate update : updates) {
+			if (!update.needsEntity()) {
+				if (update.ageDelta != 0) {
+					incrementsByDelta.computeIfAbsent(update.ageDelta, delta -> new ArrayList<>()).add(update.memberId);
+				}
+				continue;
+			}
+			
+			Member member = members.get(update.memberId);
+			if (member == null) {
+				throw new EntityNotFoundException("member not found: " + update.memberId);
+			}
+			if (update.teamId != null) {
+				member.changeTeam(em.getReference(Team.class, update.teamId));
+			}
+			if (update.age != null) {
+				member.setAge(update.age);
+			} else if (update.ageDelta != 0) {
+				member.setAge(member.getAge() + update.ageDelta);
+			}
+		}
+		
+		em.flush();
+		incrementsByDelta.forEach((delta, memberIds) -> queryFactory
+				.update(m)
+				.set(m.age, m.age.add(delta))
+				.where(m.id.in(memberIds))
+				.execute());
+	}
+	
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		flusher.shutdown();
+		flusher.awaitTermination(10, TimeUnit.SECONDS);
+		flush();
+	}
+	
+	private enum WriteType {
+		SAVE, UPDATE_AGE, ADD_AGE, CHANGE_TEAM
+	}
+	
+	private static class WriteOp {
+		
+		final WriteType type;
+		final Long memberId;
+		final Member member;
+		final int age;
+		final Long teamId;
+		final CompletableFuture<Void> committed = new CompletableFuture<>();
+		
+		WriteOp(WriteType type, Long memberId, Member member, int age, Long teamId) {
+			this.type = type;
+			this.memberId = memberId;
+			this.member = member;
+			this.age = age;
+			this.teamId = teamId;
+		}
+	}
+	
+	/**
+	 * 한 회원에 대한 변경을 도착 순서대로 합친 결과
+	 */
+	private static class MemberUpdate {
+		
+		final Long memberId;
+		Integer age;
+		int ageDelta;
+		Long teamId;
+		
+		MemberUpdate(Long memberId) {
+			this.memberId = memberId;
+		}
+		
+		void merge(WriteOp op) {
+			switch (op.type) {
+			case UPDATE_AGE:
+				age = op.age;
+				ageDelta = 0;
+				break;
+			case ADD_AGE:
+				if (age != null) {
+					age += op.age;
+				} else {
+					ageDelta += op.age;
+				}
+				break;
+			case CHANGE_TEAM:
+				teamId = op.teamId;
+				break;
+			default:
+				throw new IllegalArgumentException(op.type.name());
+			}
+		}
+		
+		boolean needsEntity() {
+			return age != null || teamId != null;
+		}
+	}
+	
+}
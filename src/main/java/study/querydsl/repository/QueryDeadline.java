@@ -0,0 +1,165 @@
+package study.querydsl.repository;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.Session;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.dao.QueryTimeoutException;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.sql.SQLBaseListener;
+import com.querydsl.sql.SQLListenerContext;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.StatementOptions;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 요청 단위 마감 시각.
+ *
+ * apply : 쿼리에 남은 시간만큼 JDBC query timeout 힌트를 건다. (초 단위라 올림)
+ * execute : 마감 시각이 되거나 cancel() 되면 실행 중인 statement 를 취소한다.
+ * 취소된 쿼리는 QueryTimeoutException 으로 끝난다.
+ */
+@Slf4j
+public class QueryDeadline {
+
+	private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "query-deadline");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final long deadlineNanos;
+	private final Set<Runnable> running = ConcurrentHashMap.newKeySet();
+	private volatile boolean cancelled;
+
+	private QueryDeadline(long deadlineNanos) {
+		this.deadlineNanos = deadlineNanos;
+	}
+
+	public static QueryDeadline after(long timeoutMillis) {
+		return new QueryDeadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+	}
+
+	public long remainingMillis() {
+		return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+	}
+
+	public boolean isExpired() {
+		return deadlineNanos - System.nanoTime() <= 0;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	public <T> JPAQuery<T> apply(JPAQuery<T> query) {
+		checkRemaining();
+		return query.setHint(QueryHints.TIMEOUT_HIBERNATE, timeoutSeconds());
+	}
+
+	public <T> SQLQuery<T> apply(SQLQuery<T> query) {
+		checkRemaining();
+		query.setStatementOptions(StatementOptions.builder().setQueryTimeout(timeoutSeconds()).build());
+		return query;
+	}
+
+	/**
+	 * em 의 세션에서 work 를 실행한다. 트랜잭션(또는 OSIV)에 묶인 EntityManager 여야 같은 세션이 취소된다.
+	 */
+	public <T> T execute(EntityManager em, Supplier<T> work) {
+		Session session = em.unwrap(Session.class);
+		return execute(session::cancelQuery, work);
+	}
+
+	/**
+	 * querydsl-sql 쿼리는 실행 직전의 PreparedStatement 를 잡아두었다가 취소한다.
+	 */
+	public <T> T execute(SQLQuery<?> query, Supplier<T> work) {
+		AtomicReference<Statement> statement = new AtomicReference<>();
+		query.addListener(new SQLBaseListener() {
+			@Override
+			public void preExecute(SQLListenerContext context) {
+				statement.set(context.getPreparedStatement());
+			}
+		});
+		return execute(() -> {
+			Statement running = statement.get();
+			if (running != null) {
+				try {
+					running.cancel();
+				} catch (SQLException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		}, work);
+	}
+
+	private <T> T execute(Runnable canceller, Supplier<T> work) {
+		checkRemaining();
+		running.add(canceller);
+		ScheduledFuture<?> timer = TIMER.schedule(this::cancelRunning, deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+		try {
+			checkRemaining();
+			return work.get();
+		} catch (QueryTimeoutException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			if (cancelled || isExpired()) {
+				throw new QueryTimeoutException(describe(), e);
+			}
+			throw e;
+		} finally {
+			timer.cancel(false);
+			synchronized (this) {
+				running.remove(canceller);
+			}
+		}
+	}
+
+	/**
+	 * 클라이언트가 끊었을 때 : 실행 중인 쿼리를 취소하고 이후 쿼리는 시작하지 않는다.
+	 */
+	public void cancel() {
+		cancelled = true;
+		cancelRunning();
+	}
+
+	// execute 가 끝난 세션의 다음 쿼리까지 취소하지 않도록 remove 와 같은 락을 쓴다.
+	private synchronized void cancelRunning() {
+		for (Runnable canceller : running) {
+			try {
+				canceller.run();
+			} catch (RuntimeException e) {
+				log.debug("query cancel failed", e);
+			}
+		}
+	}
+
+	private int timeoutSeconds() {
+		return (int) Math.max(1, (remainingMillis() + 999) / 1000);
+	}
+
+	private void checkRemaining() {
+		if (cancelled || isExpired()) {
+			throw new QueryTimeoutException(describe());
+		}
+	}
+
+	private String describe() {
+		return cancelled ? "query cancelled" : "query deadline exceeded";
+	}
+
+}
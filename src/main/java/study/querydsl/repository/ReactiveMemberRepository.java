@@ -0,0 +1,94 @@
+package study.querydsl.repository;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.StringUtils;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import reactor.core.publisher.Flux;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+
+/**
+ * MemberRepositoryCustom.search 의 reactive(R2DBC) 버전.
+ * 
+ * 구독자가 요청(request)한 만큼만 row 를 읽어오므로, 느린 클라이언트의 속도가 DB 커서까지 전달된다.
+ * 조건/조인은 search 와 같고, 결과는 memberId 순으로 내려준다.
+ */
+@Repository
+public class ReactiveMemberRepository {
+
+	private final ConnectionPool connectionPool;
+	private final DatabaseClient databaseClient;
+	
+	public ReactiveMemberRepository(@Value("${querydsl.r2dbc.url}") String url,
+			@Value("${querydsl.r2dbc.max-connections:10}") int maxConnections,
+			@Value("${spring.datasource.username:sa}") String username,
+			@Value("${spring.datasource.password:}") String password) {
+		ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url).mutate()
+				.option(ConnectionFactoryOptions.USER, username)
+				.option(ConnectionFactoryOptions.PASSWORD, password)
+				.build();
+		
+		this.connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+				.maxSize(maxConnections)
+				.build());
+		this.databaseClient = DatabaseClient.create(connectionPool);
+	}
+	
+	public Flux<MemberTeamDto> search(MemberSearchCondition condition) {
+		StringBuilder sql = new StringBuilder()
+				.append("select m.member_id, m.username, m.age, t.team_id, t.name as team_name")
+				.append(" from member m")
+				.append(" left join team t on m.team_id = t.team_id")
+				.append(" where 1 = 1");
+		Map<String, Object> params = new LinkedHashMap<>();
+		
+		if (StringUtils.hasText(condition.getUsername())) {
+			sql.append(" and m.username = :username");
+			params.put("username", condition.getUsername());
+		}
+		if (StringUtils.hasText(condition.getTeamName())) {
+			sql.append(" and t.name = :teamName");
+			params.put("teamName", condition.getTeamName());
+		}
+		if (condition.getAgeGoe() != null) {
+			sql.append(" and m.age >= :ageGoe");
+			params.put("ageGoe", condition.getAgeGoe());
+		}
+		if (condition.getAgeLoe() != null) {
+			sql.append(" and m.age <= :ageLoe");
+			params.put("ageLoe", condition.getAgeLoe());
+		}
+		sql.append(" order by m.member_id");
+		
+		GenericExecuteSpec spec = databaseClient.sql(sql.toString());
+		for (Map.Entry<String, Object> param : params.entrySet()) {
+			spec = spec.bind(param.getKey(), param.getValue());
+		}
+		
+		return spec.map((row, metadata) -> new MemberTeamDto(
+						row.get("member_id", Long.class),
+						row.get("username", String.class),
+						row.get("age", Integer.class),
+						row.get("team_id", Long.class),
+						row.get("team_name", String.class)))
+				.all();
+	}
+	
+	@PreDestroy
+	public void close() {
+		connectionPool.dispose();
+	}
+	
+}
@@ -0,0 +1,63 @@
+package study.querydsl.repository;
+
+import javax.persistence.TypedQuery;
+
+import org.hibernate.FlushMode;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.querydsl.jpa.impl.JPAQuery;
+
+/**
+ * 조회 전용 쿼리 모드 (querydsl.jpa.read-only-queries, 기본 true)
+ * 
+ * 켜져 있으면 read-only 트랜잭션 안이나 트랜잭션 밖의 조회는 엔티티를 read-only 로 올려
+ * hydrated-state 스냅샷을 만들지 않고, flush 시 dirty checking 대상에서도 빠지며,
+ * 조회 전 자동 flush 도 하지 않는다. (FlushMode.MANUAL)
+ * 
+ * 꺼져 있으면 같은 조회에 read-only 힌트를 false 로 건다.
+ * read-only 트랜잭션은 세션 기본값을 read-only 로 바꾸므로, 힌트 없이는 끌 수가 없다.
+ * 
+ * 쓰기 트랜잭션 안에서는 어느 쪽이든 힌트를 걸지 않는다.
+ * 영속성 컨텍스트는 엔티티마다 인스턴스가 하나이므로, read-only 로 올린 인스턴스는
+ * 같은 트랜잭션의 findById 로 다시 가져와도 read-only 이고 변경이 조용히 버려진다.
+ */
+@Component
+public class ReadOnlyQueries {
+
+	private final boolean enabled;
+	
+	public ReadOnlyQueries(@Value("${querydsl.jpa.read-only-queries:true}") boolean enabled) {
+		this.enabled = enabled;
+	}
+	
+	public <T> JPAQuery<T> apply(JPAQuery<T> query) {
+		if (!readPath()) {
+			return query;
+		}
+		query.setHint(QueryHints.HINT_READONLY, enabled);
+		if (enabled) {
+			query.setHint(QueryHints.HINT_FLUSH_MODE, FlushMode.MANUAL);
+		}
+		return query;
+	}
+	
+	public <T> TypedQuery<T> apply(TypedQuery<T> query) {
+		if (!readPath()) {
+			return query;
+		}
+		query.setHint(QueryHints.HINT_READONLY, enabled);
+		if (enabled) {
+			query.setHint(QueryHints.HINT_FLUSH_MODE, FlushMode.MANUAL);
+		}
+		return query;
+	}
+	
+	private static boolean readPath() {
+		return !TransactionSynchronizationManager.isActualTransactionActive()
+				|| TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+	}
+	
+}
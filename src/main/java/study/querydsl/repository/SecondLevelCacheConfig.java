@@ -0,0 +1,74 @@
+package study.querydsl.repository;
+
+import java.net.URI;
+import java.util.UUID;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import org.ehcache.config.CacheConfiguration;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ConfigurationBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import study.querydsl.entity.Member;
+
+/**
+ * Hibernate 2차 캐시 : JCache(Ehcache), 기본 EntityManagerFactory 에만 건다. (querydsl.cache.enabled, 기본 true)
+ *
+ * 리전은 여기서 크기를 정해 직접 만든다.
+ *   - study.querydsl.entity.Member : 엔티티 (querydsl.cache.member-entries)
+ *   - member-username : username 조회 쿼리 (querydsl.cache.username-entries, MemberCache)
+ *   - 쿼리 캐시 무효화용 update timestamps
+ * CacheManager 는 컨텍스트마다 따로 만든다. (테스트에서 컨텍스트가 여러 개 떠도 리전이 섞이지 않게)
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+	@Bean(destroyMethod = "close")
+	@ConditionalOnProperty(name = "querydsl.cache.enabled", havingValue = "true", matchIfMissing = true)
+	public CacheManager hibernateCacheManager(
+			@Value("${querydsl.cache.member-entries:100000}") long memberEntries,
+			@Value("${querydsl.cache.username-entries:10000}") long usernameEntries) {
+		EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+		org.ehcache.config.Configuration configuration = ConfigurationBuilder.newConfigurationBuilder()
+				.withCache(Member.class.getName(), heap(memberEntries))
+				.withCache(MemberCache.USERNAME_REGION, heap(usernameEntries))
+				.withCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME, heap(usernameEntries))
+				// 테이블 수만큼만 쓰인다. 밀려나면 쿼리 캐시가 무효화를 놓치므로 넉넉히 둔다.
+				.withCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, heap(1_000))
+				.build();
+		return provider.getCacheManager(URI.create("urn:querydsl:hibernate:" + UUID.randomUUID()), configuration);
+	}
+
+	@Bean
+	public HibernatePropertiesCustomizer secondLevelCache(ObjectProvider<CacheManager> hibernateCacheManager) {
+		return properties -> {
+			CacheManager cacheManager = hibernateCacheManager.getIfAvailable();
+			if (cacheManager == null) {
+				// hibernate-jcache 가 classpath 에 있으면 설정이 없을 때 스스로 켜지므로 명시적으로 끈다.
+				properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, false);
+				return;
+			}
+			properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+			properties.put(AvailableSettings.USE_QUERY_CACHE, true);
+			properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+			properties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+		};
+	}
+
+	private static CacheConfiguration<Object, Object> heap(long entries) {
+		return CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class, ResourcePoolsBuilder.heap(entries)).build();
+	}
+
+}
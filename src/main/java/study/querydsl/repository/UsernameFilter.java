@@ -0,0 +1,415 @@
+package study.querydsl.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import study.querydsl.entity.Member;
+
+/**
+ * member.username 의 Bloom filter. (querydsl.username-filter.enabled, 기본 true)
+ * 없는 username 조회(가입 가능 여부 확인, 잘못된 입력)는 쿼리 없이 빈 결과를 돌려준다.
+ *
+ * 기동 직후 member 전체를 읽어 만들고, rebuild-seconds 마다 다시 만든다. (삭제된 username 은 이때 빠진다)
+ *   rebuild-seconds 가 0 이면 기동 직후 한 번만 만든다.
+ * 그 사이 이 인스턴스에서 Hibernate 로 insert / update 된 username 은 flush 시점과 커밋 직후 두 번 넣는다.
+ * 커밋 직후에 넣는 것은 rebuild 가 커밋 전 데이터를 읽어 새 필터에서 빠지는 것을 막기 위함이다.
+ *
+ * 다른 인스턴스나 JDBC 로 직접 쓴 username 은 updated_at 이 watermark 이후인 회원을 읽어(poll) 넣는다.
+ * (idx_member_updated_at) updated_at 은 쓰기 트랜잭션의 시작 시각이므로 watermark 보다 poll-overlap-ms 앞부터 읽는다.
+ * poll-overlap-ms 보다 오래 걸리는 쓰기 트랜잭션이 넣은 username 은 다음 rebuild 까지 없다고 판단될 수 있다.
+ *   poll-seconds 마다 미리 읽어 두어 요청이 읽을 양을 줄인다. 0 이면 미리 읽지 않는다.
+ *
+ * 필터가 없다고 해도 요청이 시작된 뒤에 시작한 rebuild / poll 이 끝난 필터여야 없다고 확정한다.
+ * 그렇지 않으면 poll 을 하고 다시 본다. 동시에 기다리는 요청들은 poll 하나를 나눠 쓴다.
+ * sync-wait-ms 안에 poll 을 시작하지 못하면 (rebuild 중 등) 필터를 믿지 않고 쿼리를 실행한다.
+ *
+ * 쓰기 트랜잭션 안에서는 flush 되지 않은 회원이 있을 수 있으므로 필터를 쓰지 않는다.
+ *
+ * 지표 : member.username.filter (result=absent|present|false_positive), member.username.filter.false.positive.rate
+ */
+@Slf4j
+@Component
+public class UsernameFilter {
+
+	private final JdbcTemplate jdbcTemplate;
+	private final EntityManagerFactory emf;
+	private final boolean enabled;
+	private final double falsePositiveProbability;
+	private final long minExpectedUsernames;
+	private final long rebuildSeconds;
+	private final long pollSeconds;
+	private final long pollOverlapMillis;
+	private final long syncWaitMillis;
+
+	// 조회는 current, rebuild 중에는 building 에도 넣는다.
+	private volatile Bits current;
+	private volatile Bits building;
+	// 이 시각(DB) 이후에 바뀐 회원은 아직 읽지 않았다.
+	private Instant watermark;
+	// 마지막으로 끝난 rebuild / poll 이 시작한 시각 (System.nanoTime)
+	private volatile long syncedFrom;
+	private volatile boolean synced;
+	// rebuild, poll 은 한 번에 하나만
+	private final ReentrantLock syncLock = new ReentrantLock();
+
+	private final Counter absent;
+	private final Counter present;
+	private final Counter falsePositive;
+
+	private final ScheduledExecutorService rebuilder = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "username-filter");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	public UsernameFilter(JdbcTemplate jdbcTemplate, EntityManagerFactory emf, MeterRegistry meterRegistry,
+			@Value("${querydsl.username-filter.enabled:true}") boolean enabled,
+			@Value("${querydsl.username-filter.false-positive-probability:0.01}") double falsePositiveProbability,
+			@Value("${querydsl.username-filter.min-expected-usernames:100000}") long minExpectedUsernames,
+			@Value("${querydsl.username-filter.rebuild-seconds:600}") long rebuildSeconds,
+			@Value("${querydsl.username-filter.poll-seconds:5}") long pollSeconds,
+			@Value("${querydsl.username-filter.poll-overlap-ms:5000}") long pollOverlapMillis,
+			@Value("${querydsl.username-filter.sync-wait-ms:100}") long syncWaitMillis) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.emf = emf;
+		this.enabled = enabled;
+		this.falsePositiveProbability = falsePositiveProbability;
+		this.minExpectedUsernames = minExpectedUsernames;
+		this.rebuildSeconds = rebuildSeconds;
+		this.pollSeconds = pollSeconds;
+		this.pollOverlapMillis = pollOverlapMillis;
+		this.syncWaitMillis = syncWaitMillis;
+
+		this.absent = meterRegistry.counter("member.username.filter", "result", "absent");
+		this.present = meterRegistry.counter("member.username.filter", "result", "present");
+		this.falsePositive = meterRegistry.counter("member.username.filter", "result", "false_positive");
+		// 없는 username 중 필터를 통과해 쿼리까지 간 비율
+		Gauge.builder("member.username.filter.false.positive.rate", this, f -> {
+					double negatives = f.absent.count() + f.falsePositive.count();
+					return negatives == 0 ? 0 : f.falsePositive.count() / negatives;
+				})
+				.register(meterRegistry);
+	}
+
+	// 리스너와 rebuild 는 빈이 다 만들어진 뒤에 시작한다.
+	@PostConstruct
+	public void start() {
+		if (enabled) {
+			EventListenerRegistry listeners = emf.unwrap(SessionFactoryImplementor.class)
+					.getServiceRegistry().getService(EventListenerRegistry.class);
+			listeners.appendListeners(EventType.POST_INSERT, new InsertListener());
+			listeners.appendListeners(EventType.POST_UPDATE, new UpdateListener());
+			if (rebuildSeconds > 0) {
+				rebuilder.scheduleWithFixedDelay(this::tryRebuild, 0, rebuildSeconds, TimeUnit.SECONDS);
+			} else {
+				rebuilder.execute(this::tryRebuild);
+			}
+			if (pollSeconds > 0) {
+				rebuilder.scheduleWithFixedDelay(this::tryPoll, pollSeconds, pollSeconds, TimeUnit.SECONDS);
+			}
+		}
+	}
+
+	/**
+	 * 요청 뒤에 끝난 필터가 없다고 하면 query 를 실행하지 않고 빈 목록을 돌려준다.
+	 */
+	public <T> List<T> find(String username, Supplier<List<T>> query) {
+		long requested = System.nanoTime();
+		Bits bits = current;
+		if (bits == null || !usable()) {
+			return query.get();
+		}
+		if (username == null) {
+			absent.increment();
+			return Collections.emptyList();
+		}
+		if (!bits.mightContain(username)) {
+			if (syncedAfter(requested) && !current.mightContain(username)) {
+				absent.increment();
+				return Collections.emptyList();
+			}
+			// 요청 뒤의 변경을 읽었는지 알 수 없으면 없다고 확정하지 않는다.
+			return query.get();
+		}
+		List<T> result = query.get();
+		(result.isEmpty() ? falsePositive : present).increment();
+		return result;
+	}
+
+	public void add(String username) {
+		if (username == null) {
+			return;
+		}
+		// building 을 먼저 읽어야 rebuild 가 끝나며 바꿔 끼우는 사이에 빠지지 않는다.
+		Bits next = building;
+		Bits bits = current;
+		if (bits != null) {
+			bits.put(username);
+		}
+		if (next != null) {
+			next.put(username);
+		}
+	}
+
+	/**
+	 * member 전체를 읽어 새 필터로 바꾼다.
+	 */
+	public void rebuild() {
+		syncLock.lock();
+		try {
+			long startedNanos = System.nanoTime();
+			Instant started = now();
+			Long count = jdbcTemplate.queryForObject("select count(*) from member", Long.class);
+			Bits next = new Bits(Math.max(minExpectedUsernames, 2 * (count != null ? count : 0)), falsePositiveProbability);
+			building = next;
+			try {
+				jdbcTemplate.query("select username from member where username is not null", rs -> {
+					next.put(rs.getString(1));
+				});
+				current = next;
+				watermark = started;
+				synced(startedNanos);
+			} finally {
+				building = null;
+			}
+			log.debug("username filter rebuilt : {} usernames, {} bits", count, next.size());
+		} finally {
+			syncLock.unlock();
+		}
+	}
+
+	/**
+	 * 마지막 rebuild / poll 이후 바뀐 회원의 username 을 넣는다. 아직 필터가 없으면 아무것도 하지 않는다.
+	 */
+	public void poll() {
+		syncLock.lock();
+		try {
+			pollLocked();
+		} finally {
+			syncLock.unlock();
+		}
+	}
+
+	private void pollLocked() {
+		if (watermark == null) {
+			return;
+		}
+		long startedNanos = System.nanoTime();
+		Instant started = now();
+		jdbcTemplate.query("select username from member where updated_at > ? and username is not null",
+				rs -> {
+					add(rs.getString(1));
+				},
+				Timestamp.from(watermark.minusMillis(pollOverlapMillis)));
+		watermark = started;
+		synced(startedNanos);
+	}
+
+	private void synced(long startedNanos) {
+		syncedFrom = startedNanos;
+		synced = true;
+	}
+
+	/**
+	 * requested 뒤에 시작한 rebuild / poll 이 끝났으면 true. 아니면 직접 poll 한다.
+	 * 먼저 lock 을 잡은 요청의 poll 이 뒤에 기다린 요청까지 덮으면 그 요청들은 다시 읽지 않는다.
+	 */
+	private boolean syncedAfter(long requested) {
+		if (synced && syncedFrom - requested >= 0) {
+			return true;
+		}
+		try {
+			if (!syncLock.tryLock(syncWaitMillis, TimeUnit.MILLISECONDS)) {
+				return false;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		try {
+			if (!(synced && syncedFrom - requested >= 0)) {
+				pollLocked();
+			}
+			return synced && syncedFrom - requested >= 0;
+		} catch (RuntimeException e) {
+			log.warn("username filter poll failed", e);
+			return false;
+		} finally {
+			syncLock.unlock();
+		}
+	}
+
+	private Instant now() {
+		return jdbcTemplate.queryForObject("select current_timestamp", Timestamp.class).toInstant();
+	}
+
+	private void tryPoll() {
+		try {
+			poll();
+		} catch (RuntimeException e) {
+			log.warn("username filter poll failed", e);
+		}
+	}
+
+	private void tryRebuild() {
+		try {
+			rebuild();
+		} catch (RuntimeException e) {
+			log.warn("username filter rebuild failed", e);
+		}
+	}
+
+	private boolean usable() {
+		return enabled && (!TransactionSynchronizationManager.isActualTransactionActive()
+				|| TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+	}
+
+	private void added(Object entity) {
+		if (!(entity instanceof Member)) {
+			return;
+		}
+		String username = ((Member) entity).getUsername();
+		add(username);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int status) {
+					add(username);
+				}
+			});
+		}
+	}
+
+	@PreDestroy
+	public void close() {
+		rebuilder.shutdownNow();
+	}
+
+	private class InsertListener implements PostInsertEventListener {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void onPostInsert(PostInsertEvent event) {
+			added(event.getEntity());
+		}
+
+		@Override
+		public boolean requiresPostCommitHanding(EntityPersister persister) {
+			return false;
+		}
+
+	}
+
+	private class UpdateListener implements PostUpdateEventListener {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void onPostUpdate(PostUpdateEvent event) {
+			added(event.getEntity());
+		}
+
+		@Override
+		public boolean requiresPostCommitHanding(EntityPersister persister) {
+			return false;
+		}
+
+	}
+
+	/**
+	 * k 개의 비트 위치는 64bit 해시 두 개로 만든다. (h1 + i * h2)
+	 */
+	static class Bits {
+
+		private final AtomicLongArray words;
+		private final long size;
+		private final int hashes;
+
+		Bits(long expected, double falsePositiveProbability) {
+			long bits = (long) Math.ceil(-expected * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+			this.words = new AtomicLongArray((int) Math.min(Integer.MAX_VALUE, Math.max(1, (bits + 63) / 64)));
+			this.size = words.length() * 64L;
+			this.hashes = Math.max(1, (int) Math.round((double) size / expected * Math.log(2)));
+		}
+
+		long size() {
+			return size;
+		}
+
+		void put(String value) {
+			long h1 = hash(value);
+			long h2 = mix(h1) | 1;
+			for (int i = 0; i < hashes; i++) {
+				long bit = Long.remainderUnsigned(h1 + i * h2, size);
+				long mask = 1L << bit;
+				int word = (int) (bit >>> 6);
+				if ((words.get(word) & mask) == 0) {
+					words.accumulateAndGet(word, mask, (a, b) -> a | b);
+				}
+			}
+		}
+
+		boolean mightContain(String value) {
+			long h1 = hash(value);
+			long h2 = mix(h1) | 1;
+			for (int i = 0; i < hashes; i++) {
+				long bit = Long.remainderUnsigned(h1 + i * h2, size);
+				if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		// FNV-1a
+		private static long hash(String value) {
+			long hash = 0xcbf29ce484222325L;
+			for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+				hash ^= b & 0xff;
+				hash *= 0x100000001b3L;
+			}
+			return mix(hash);
+		}
+
+		// splitmix64 finalizer
+		private static long mix(long z) {
+			z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+			z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+			return z ^ (z >>> 31);
+		}
+
+	}
+
+}
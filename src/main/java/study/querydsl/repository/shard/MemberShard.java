@@ -0,0 +1,51 @@
+package study.querydsl.repository.shard;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.zaxxer.hikari.HikariDataSource;
+
+import lombok.Getter;
+
+/**
+ * 샤드 하나 = DataSource + EntityManagerFactory + 트랜잭션.
+ * dataSource 는 pool 을 decorator(p6spy)로 감싼 것이다.
+ */
+@Getter
+public class MemberShard {
+
+	private final int index;
+	private final HikariDataSource pool;
+	private final DataSource dataSource;
+	private final EntityManagerFactory entityManagerFactory;
+	private final EntityManager em;
+	private final JPAQueryFactory queryFactory;
+	private final TransactionTemplate transactionTemplate;
+	private final TransactionTemplate readOnlyTransactionTemplate;
+	
+	public MemberShard(int index, HikariDataSource pool, DataSource dataSource, EntityManagerFactory entityManagerFactory) {
+		this.index = index;
+		this.pool = pool;
+		this.dataSource = dataSource;
+		this.entityManagerFactory = entityManagerFactory;
+		this.em = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+		this.queryFactory = new JPAQueryFactory(em);
+		
+		JpaTransactionManager transactionManager = new JpaTransactionManager(entityManagerFactory);
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+		this.readOnlyTransactionTemplate.setReadOnly(true);
+	}
+	
+	public void close() {
+		entityManagerFactory.close();
+		pool.close();
+	}
+	
+}
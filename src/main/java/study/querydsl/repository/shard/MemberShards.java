@@ -0,0 +1,57 @@
+package study.querydsl.repository.shard;
+
+import java.util.List;
+import java.util.Objects;
+
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+/**
+ * 팀 단위로 member 를 샤드에 나눈다.
+ * 
+ * 1. 팀은 이름의 해시로 샤드가 정해지고, 그 샤드에서 id 를 받는다. (team id % 샤드 수 = 샤드 번호)
+ * 2. 회원은 소속 팀의 샤드에 저장된다. 팀이 없으면 username 해시로 정한다.
+ * 
+ * 따라서 teamName 조건이 있으면 샤드 하나만 보면 된다.
+ * 팀 이름을 바꾸면 샤드가 달라지므로, 이름 변경은 샤드 이동(재적재)으로 처리해야 한다.
+ */
+public class MemberShards {
+
+	private final List<MemberShard> shards;
+	
+	public MemberShards(List<MemberShard> shards) {
+		this.shards = shards;
+	}
+	
+	public List<MemberShard> all() {
+		return shards;
+	}
+	
+	public int size() {
+		return shards.size();
+	}
+	
+	public MemberShard byId(Long id) {
+		return shards.get((int) Math.floorMod(id, (long) shards.size()));
+	}
+	
+	public MemberShard byTeamName(String teamName) {
+		return shards.get(Math.floorMod(teamName.hashCode(), shards.size()));
+	}
+	
+	public MemberShard of(Team team) {
+		return team.getId() != null ? byId(team.getId()) : byTeamName(team.getName());
+	}
+	
+	public MemberShard of(Member member) {
+		if (member.getTeam() != null) {
+			return of(member.getTeam());
+		}
+		return shards.get(Math.floorMod(Objects.hashCode(member.getUsername()), shards.size()));
+	}
+	
+	public void close() {
+		shards.forEach(MemberShard::close);
+	}
+	
+}
@@ -0,0 +1,284 @@
+package study.querydsl.repository.shard;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.util.StringUtils;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.MemberTeamProjection;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.QTeam;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepositoryCustom;
+import study.querydsl.repository.QueryDeadline;
+
+/**
+ * 팀 기준으로 샤딩된 member 저장소. (MemberShards 참고)
+ * 
+ * search 는 teamName 이 있으면 해당 샤드 하나만 조회하고,
+ * 없으면 모든 샤드를 병렬로 조회한 뒤 memberId 순으로 병합한다.
+ * 
+ * 병렬 조회는 요청들이 함께 쓰는 scatterThreads 개의 스레드에서 돌므로,
+ * 동시에 scatterThreads / 샤드 수 개의 요청까지 기다리지 않고 실행된다.
+ */
+public class ShardedMemberRepository implements MemberRepositoryCustom {
+
+	private static final Comparator<MemberTeamDto> MEMBER_ID_ORDER = Comparator.comparingLong(MemberTeamDto::getMemberId);
+	
+	private final MemberShards shards;
+	private final ExecutorService scatterExecutor;
+	private final long scatterTimeoutMillis;
+	
+	/**
+	 * @param scatterThreads 병렬 조회 스레드 수 (샤드 수보다 작으면 샤드 수)
+	 * @param scatterTimeoutMillis deadline 없이 호출된 병렬 조회의 최대 대기 시간
+	 */
+	public ShardedMemberRepository(MemberShards shards, int scatterThreads, long scatterTimeoutMillis) {
+		this.shards = shards;
+		this.scatterTimeoutMillis = scatterTimeoutMillis;
+		this.scatterExecutor = Executors.newFixedThreadPool(Math.max(scatterThreads, shards.size()), r -> {
+			Thread thread = new Thread(r, "member-shard-scatter");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	
+	public Team saveTeam(Team team) {
+		MemberShard shard = shards.of(team);
+		shard.getTransactionTemplate().executeWithoutResult(status -> shard.getEm().persist(team));
+		return team;
+	}
+	
+	public Member save(Member member) {
+		MemberShard shard = shards.of(member);
+		shard.getTransactionTemplate().executeWithoutResult(status -> shard.getEm().persist(member));
+		return member;
+	}
+	
+	public Optional<Member> findById(Long id) {
+		return Optional.ofNullable(shards.byId(id).getEm().find(Member.class, id));
+	}
+	
+	@Override
+	public List<MemberTeamDto> search(MemberSearchCondition condition) {
+		return search(condition, null);
+	}
+	
+	/**
+	 * 모든 샤드의 쿼리가 같은 deadline 을 공유한다. 하나라도 취소되면 전체가 QueryTimeoutException 으로 끝난다.
+	 * deadline 이 없으면 scatterTimeoutMillis 를 deadline 으로 쓴다. 스레드를 기다리는 시간도 여기에 포함된다.
+	 */
+	@Override
+	public List<MemberTeamDto> search(MemberSearchCondition condition, QueryDeadline deadline) {
+		if (StringUtils.hasText(condition.getTeamName())) {
+			return search(shards.byTeamName(condition.getTeamName()), condition, deadline);
+		}
+		
+		QueryDeadline scatterDeadline = deadline != null ? deadline : QueryDeadline.after(scatterTimeoutMillis);
+		List<CompletableFuture<List<MemberTeamDto>>> scattered = shards.all().stream()
+				.map(shard -> CompletableFuture.supplyAsync(() -> search(shard, condition, scatterDeadline), scatterExecutor))
+				.collect(Collectors.toList());
+		
+		List<List<MemberTeamDto>> gathered = new ArrayList<>(scattered.size());
+		try {
+			for (CompletableFuture<List<MemberTeamDto>> future : scattered) {
+				gathered.add(future.get(scatterDeadline.remainingMillis(), TimeUnit.MILLISECONDS));
+			}
+		} catch (TimeoutException e) {
+			// 실행 중인 샤드 쿼리는 취소하고, 아직 스레드를 못 받은 조회는 시작하지 않는다.
+			scatterDeadline.cancel();
+			throw new QueryTimeoutException("scatter-gather search did not finish in time", e);
+		} catch (InterruptedException e) {
+			scatterDeadline.cancel();
+			Thread.currentThread().interrupt();
+			throw new QueryTimeoutException("scatter-gather search interrupted", e);
+		} catch (ExecutionException e) {
+			scatterDeadline.cancel();
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+		return merge(gathered);
+	}
+	
+	/**
+	 * 같은 샤드 안에서의 팀 변경만 지원한다.
+	 * 다른 샤드의 팀으로 옮기려면 row 를 옮겨야(삭제 후 재적재) 하므로, 팀과 다른 샤드에 있는 회원이 있으면 아무것도 바꾸지 않는다.
+	 * 
+	 * @throws IllegalArgumentException 팀과 다른 샤드에 있는 회원이 있을 때 (메시지에 해당 회원 id)
+	 */
+	@Override
+	public long reassignTeam(Collection<Long> memberIds, Long teamId) {
+		MemberShard shard = shards.byId(teamId);
+		List<Long> otherShard = memberIds.stream()
+				.filter(memberId -> shards.byId(memberId) != shard)
+				.collect(Collectors.toList());
+		if (!otherShard.isEmpty()) {
+			throw new IllegalArgumentException("members " + otherShard + " are on a different shard than team " + teamId);
+		}
+		
+		QMember m = QMember.member;
+		QTeam t = QTeam.team;
+		return shard.getTransactionTemplate().execute(status -> shard.getQueryFactory()
+				.update(m)
+				.set(m.team, shard.getEm().getReference(Team.class, teamId))
+				.set(m.teamName, JPAExpressions.select(t.name).from(t).where(t.id.eq(teamId)))
+				.where(m.id.in(memberIds))
+				.execute());
+	}
+	
+	/**
+	 * 팀의 샤드는 팀 이름으로 정해지므로 같은 샤드로 가는 이름으로만 바꿀 수 있다.
+	 */
+	@Override
+	public long renameTeam(Long teamId, String name) {
+		MemberShard shard = shards.byId(teamId);
+		if (shards.byTeamName(name) != shard) {
+			throw new IllegalArgumentException("team " + teamId + " cannot be renamed to " + name + " : the new name belongs to a different shard");
+		}
+		
+		QMember m = QMember.member;
+		QTeam t = QTeam.team;
+		return shard.getTransactionTemplate().execute(status -> {
+			shard.getQueryFactory()
+					.update(t)
+					.set(t.name, name)
+					.where(t.id.eq(teamId))
+					.execute();
+			return shard.getQueryFactory()
+					.update(m)
+					.set(m.teamName, name)
+					.where(m.team.id.eq(teamId))
+					.execute();
+		});
+	}
+	
+	private List<MemberTeamDto> search(MemberShard shard, MemberSearchCondition condition, QueryDeadline deadline) {
+		return shard.getReadOnlyTransactionTemplate().execute(status -> {
+			if (deadline == null) {
+				return searchQuery(shard, condition).fetch();
+			}
+			return deadline.execute(shard.getEm(), () -> deadline.apply(searchQuery(shard, condition)).fetch());
+		});
+	}
+	
+	private JPAQuery<MemberTeamDto> searchQuery(MemberShard shard, MemberSearchCondition condition) {
+		QMember m = QMember.member;
+		QTeam t = QTeam.team;
+		
+		return shard.getQueryFactory()
+				.select(new MemberTeamProjection(
+						m.id.as("memberId"),
+						m.username,
+						m.age,
+						t.id.as("teamId"),
+						t.name.as("teamName")
+						))
+				.from(m)
+				.leftJoin(m.team, t)
+				.where(
+						usernameEq(condition.getUsername()),
+						teamNameEq(condition.getTeamName()),
+						ageGoe(condition.getAgeGoe()),
+						ageLoe(condition.getAgeLoe())
+						)
+				.orderBy(m.id.asc());
+	}
+	
+	/**
+	 * 샤드별로 memberId 순 정렬된 결과를 k-way merge
+	 */
+	private List<MemberTeamDto> merge(List<List<MemberTeamDto>> sortedLists) {
+		int total = sortedLists.stream().mapToInt(List::size).sum();
+		List<MemberTeamDto> merged = new ArrayList<>(total);
+		
+		PriorityQueue<Cursor> queue = new PriorityQueue<>((a, b) -> MEMBER_ID_ORDER.compare(a.getCurrent(), b.getCurrent()));
+		for (List<MemberTeamDto> list : sortedLists) {
+			Iterator<MemberTeamDto> iterator = list.iterator();
+			if (iterator.hasNext()) {
+				queue.add(new Cursor(iterator));
+			}
+		}
+		
+		while (!queue.isEmpty()) {
+			Cursor cursor = queue.poll();
+			merged.add(cursor.getCurrent());
+			if (cursor.advance()) {
+				queue.add(cursor);
+			}
+		}
+		return merged;
+	}
+	
+	private BooleanExpression usernameEq(String username) {
+		QMember m = QMember.member;
+		return StringUtils.hasText(username) ? m.username.eq(username) : null;
+	}
+
+	private BooleanExpression teamNameEq(String teamName) {
+		QTeam t = QTeam.team;
+		return StringUtils.hasText(teamName) ? t.name.eq(teamName) : null;
+	}
+
+	private BooleanExpression ageGoe(Integer ageGoe) {
+		QMember m = QMember.member;
+		return ageGoe != null ? m.age.goe(ageGoe) : null;
+	}
+
+	private BooleanExpression ageLoe(Integer ageLoe) {
+		QMember m = QMember.member;
+		return ageLoe != null ? m.age.loe(ageLoe) : null;
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		scatterExecutor.shutdownNow();
+	}
+	
+	private static class Cursor {
+		
+		private final Iterator<MemberTeamDto> iterator;
+		private MemberTeamDto current;
+		
+		Cursor(Iterator<MemberTeamDto> iterator) {
+			this.iterator = iterator;
+			this.current = iterator.next();
+		}
+		
+		MemberTeamDto getCurrent() {
+			return current;
+		}
+		
+		boolean advance() {
+			if (!iterator.hasNext()) {
+				return false;
+			}
+			current = iterator.next();
+			return true;
+		}
+	}
+	
+}
@@ -0,0 +1,106 @@
+package study.querydsl.repository.shard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+
+import com.github.gavlyukovskiy.boot.jdbc.decorator.DataSourceDecorator;
+import com.zaxxer.hikari.HikariDataSource;
+
+import study.querydsl.entity.ChangeTracking;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.PooledSequenceGenerator;
+
+/**
+ * querydsl.sharding.enabled=true 일 때 샤드별 DataSource / EntityManagerFactory 를 만든다.
+ * 기본 DataSource(EntityManager) 는 그대로 두고, ShardedMemberRepository 만 샤드를 사용한다.
+ * ShardedMemberRepository 는 아직 컨트롤러, 서비스에 연결되어 있지 않다. 샤드를 쓰려는 쪽에서 주입해 쓴다.
+ * 
+ * 샤드 DataSource 도 기본 DataSource 와 같은 decorator(p6spy)로 감싸므로
+ * SqlLogListener, SqlTimeListener, MemberDataVersionListener 가 샤드 쿼리도 본다.
+ * JPA 설정은 기본 EntityManagerFactory 와 같다. (spring.jpa.*, HibernatePropertiesCustomizer, ChangeTracking)
+ * 2차 캐시만 끈다.
+ * 
+ *   querydsl.sharding.urls: jdbc:h2:tcp://db1/~/member,jdbc:h2:tcp://db2/~/member
+ *   querydsl.sharding.scatter-threads: 병렬 조회 스레드 수 (동시 요청 수 x 샤드 수 기준)
+ *   querydsl.sharding.scatter-timeout-ms: deadline 없는 병렬 조회의 최대 대기 시간
+ */
+@Configuration
+@ConditionalOnProperty(name = "querydsl.sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+	@Bean(destroyMethod = "close")
+	public MemberShards memberShards(EntityManagerFactoryBuilder builder,
+			JpaProperties jpaProperties,
+			HibernateProperties hibernateProperties,
+			ObjectProvider<HibernatePropertiesCustomizer> hibernatePropertiesCustomizers,
+			ObjectProvider<DataSourceDecorator> dataSourceDecorators,
+			@Value("${querydsl.sharding.urls}") String[] urls,
+			@Value("${querydsl.sharding.username:sa}") String username,
+			@Value("${querydsl.sharding.password:}") String password) {
+		
+		HibernateSettings hibernateSettings = new HibernateSettings()
+				.hibernatePropertiesCustomizers(hibernatePropertiesCustomizers.orderedStream().collect(Collectors.toList()));
+		List<DataSourceDecorator> decorators = dataSourceDecorators.orderedStream().collect(Collectors.toList());
+		
+		List<MemberShard> shards = new ArrayList<>();
+		for (int i = 0; i < urls.length; i++) {
+			HikariDataSource pool = DataSourceBuilder.create()
+					.type(HikariDataSource.class)
+					.url(urls[i].trim())
+					.username(username)
+					.password(password)
+					.build();
+			pool.setPoolName("shard-" + i);
+			DataSource dataSource = pool;
+			for (DataSourceDecorator decorator : decorators) {
+				dataSource = decorator.decorate("shard-" + i, dataSource);
+			}
+			
+			Map<String, Object> properties = hibernateProperties
+					.determineHibernateProperties(jpaProperties.getProperties(), hibernateSettings);
+			properties.putIfAbsent(EntityManagerFactoryBuilderImpl.METADATA_BUILDER_CONTRIBUTOR, ChangeTracking.class.getName());
+			properties.put(PooledSequenceGenerator.SHARD_INDEX, i);
+			properties.put(PooledSequenceGenerator.SHARD_COUNT, urls.length);
+			// 2차 캐시는 기본 EntityManagerFactory 에만 쓴다. (SecondLevelCacheConfig)
+			properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, false);
+			
+			LocalContainerEntityManagerFactoryBean factoryBean = builder
+					.dataSource(dataSource)
+					.packages(Member.class)
+					.persistenceUnit("shard-" + i)
+					.properties(properties)
+					.build();
+			factoryBean.afterPropertiesSet();
+			
+			shards.add(new MemberShard(i, pool, dataSource, factoryBean.getObject()));
+		}
+		return new MemberShards(shards);
+	}
+	
+	@Bean
+	public ShardedMemberRepository shardedMemberRepository(MemberShards memberShards,
+			@Value("${querydsl.sharding.scatter-threads:32}") int scatterThreads,
+			@Value("${querydsl.sharding.scatter-timeout-ms:30000}") long scatterTimeoutMillis) {
+		return new ShardedMemberRepository(memberShards, scatterThreads, scatterTimeoutMillis);
+	}
+	
+}
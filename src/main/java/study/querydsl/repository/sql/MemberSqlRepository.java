@@ -0,0 +1,226 @@
+package study.querydsl.repository.sql;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.sql.SQLExpressions;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.SQLQueryFactory;
+
+import lombok.RequiredArgsConstructor;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.MemberTeamProjection;
+import study.querydsl.repository.MemberCache;
+import study.querydsl.repository.MemberRepositoryCustom;
+import study.querydsl.repository.QueryDeadline;
+
+/**
+ * querydsl-sql 로 member/team 테이블을 직접 조회한다.
+ * HQL 변환, 엔티티 메타모델, 영속성 컨텍스트를 거치지 않고 ResultSet 에서 바로 MemberTeamDto 를 만든다.
+ */
+@Repository
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class MemberSqlRepository implements MemberRepositoryCustom {
+
+	private final SQLQueryFactory queryFactory;
+	private final MemberCache memberCache;
+	
+	@Override
+	public List<MemberTeamDto> search(MemberSearchCondition condition) {
+		return searchQuery(condition).fetch();
+	}
+	
+	@Override
+	public List<MemberTeamDto> search(MemberSearchCondition condition, QueryDeadline deadline) {
+		SQLQuery<MemberTeamDto> query = deadline.apply(searchQuery(condition));
+		return deadline.execute(query, query::fetch);
+	}
+	
+	/**
+	 * member_id 가 [fromId, toId) 인 회원만 조회한다. 큰 결과를 구간별로 나눠 병렬로 읽을 때 쓴다. (AdaptiveMemberSearch)
+	 * 구간들이 같은 deadline 을 쓰면 deadline.cancel() 로 모든 구간의 쿼리가 함께 취소된다.
+	 */
+	public List<MemberTeamDto> searchRange(MemberSearchCondition condition, long fromId, long toId, QueryDeadline deadline) {
+		SMember m = SMember.member;
+		SQLQuery<MemberTeamDto> query = deadline.apply(searchQuery(condition)
+				.where(m.memberId.goe(fromId), m.memberId.lt(toId)));
+		return deadline.execute(query, query::fetch);
+	}
+	
+	/**
+	 * 결과를 목록으로 모으지 않고 ResultSet 에서 읽는 대로 sink 에 넘긴다.
+	 * @return 넘긴 건수
+	 */
+	public long searchEach(MemberSearchCondition condition, Consumer<MemberTeamDto> sink) {
+		long rows = 0;
+		try (CloseableIterator<MemberTeamDto> iterator = searchQuery(condition).iterate()) {
+			while (iterator.hasNext()) {
+				sink.accept(iterator.next());
+				rows++;
+			}
+		}
+		return rows;
+	}
+	
+	/**
+	 * member_id 의 최솟값과 최댓값. 회원이 없으면 null
+	 */
+	public long[] idRange() {
+		SMember m = SMember.member;
+		Tuple range = queryFactory
+				.select(m.memberId.min(), m.memberId.max())
+				.from(m)
+				.fetchOne();
+		if (range == null || range.get(0, Long.class) == null) {
+			return null;
+		}
+		return new long[] { range.get(0, Long.class), range.get(1, Long.class) };
+	}
+	
+	/**
+	 * 여러 조건을 UNION ALL 쿼리 한 번으로 조회하고, 결과를 조건 순서대로 나눠 돌려준다.
+	 * 분기마다 조건 번호를 상수 컬럼으로 함께 읽어 어느 조건의 결과인지 구분한다.
+	 * OR 로 묶는 것과 달리 분기마다 자기 조건에 맞는 인덱스를 탈 수 있다.
+	 * 여러 조건에 걸리는 회원은 조건마다 한 번씩 나온다.
+	 * @throws IllegalArgumentException 조건이 null 이거나 비어 있을 때 (분기마다 테이블 전체를 읽게 되므로)
+	 */
+	public List<List<MemberTeamDto>> searchBatch(List<MemberSearchCondition> conditions) {
+		for (int i = 0; i < conditions.size(); i++) {
+			if (conditions.get(i) == null || conditions.get(i).isEmpty()) {
+				throw new IllegalArgumentException("condition " + i + " is null or empty");
+			}
+		}
+		
+		List<List<MemberTeamDto>> results = new ArrayList<>(conditions.size());
+		for (int i = 0; i < conditions.size(); i++) {
+			results.add(new ArrayList<>());
+		}
+		if (conditions.isEmpty()) {
+			return results;
+		}
+		
+		SMember m = SMember.member;
+		STeam t = STeam.team;
+		
+		List<SubQueryExpression<Tuple>> branches = new ArrayList<>(conditions.size());
+		for (int i = 0; i < conditions.size(); i++) {
+			branches.add(SQLExpressions
+					.select(Expressions.numberTemplate(Integer.class, Integer.toString(i)), m.memberId, m.username, m.age, t.teamId, t.name)
+					.from(m)
+					.leftJoin(t).on(m.teamId.eq(t.teamId))
+					.where(matching(conditions.get(i))));
+		}
+		
+		MemberTeamProjection projection = new MemberTeamProjection(m.memberId, m.username, m.age, t.teamId, t.name);
+		for (Tuple row : queryFactory.query().unionAll(branches).fetch()) {
+			results.get(row.get(0, Integer.class)).add(projection.newInstance(
+					row.get(m.memberId),
+					row.get(m.username),
+					row.get(m.age),
+					row.get(t.teamId),
+					row.get(t.name)));
+		}
+		return results;
+	}
+	
+	/**
+	 * SQL update 이므로 이미 영속성 컨텍스트에 올라와 있는 회원은 갱신되지 않는다.
+	 * Hibernate 2차 캐시는 직접 비운다.
+	 */
+	@Override
+	@Transactional
+	public long reassignTeam(Collection<Long> memberIds, Long teamId) {
+		SMember m = SMember.member;
+		STeam t = STeam.team;
+		
+		long count = queryFactory
+				.update(m)
+				.set(m.teamId, teamId)
+				.set(m.teamName, SQLExpressions.select(t.name).from(t).where(t.teamId.eq(teamId)))
+				.where(m.memberId.in(memberIds))
+				.execute();
+		memberCache.evict();
+		return count;
+	}
+	
+	@Override
+	@Transactional
+	public long renameTeam(Long teamId, String name) {
+		SMember m = SMember.member;
+		STeam t = STeam.team;
+		
+		queryFactory
+				.update(t)
+				.set(t.name, name)
+				.where(t.teamId.eq(teamId))
+				.execute();
+		long count = queryFactory
+				.update(m)
+				.set(m.teamName, name)
+				.where(m.teamId.eq(teamId))
+				.execute();
+		memberCache.evict();
+		return count;
+	}
+	
+	private SQLQuery<MemberTeamDto> searchQuery(MemberSearchCondition condition) {
+		SMember m = SMember.member;
+		STeam t = STeam.team;
+		
+		return queryFactory
+				.select(new MemberTeamProjection(
+						m.memberId,
+						m.username,
+						m.age,
+						t.teamId,
+						t.name
+						))
+				.from(m)
+				.leftJoin(t).on(m.teamId.eq(t.teamId))
+				.where(matching(condition));
+	}
+	
+	private Predicate[] matching(MemberSearchCondition condition) {
+		return new Predicate[] {
+				usernameEq(condition.getUsername()),
+				teamNameEq(condition.getTeamName()),
+				ageGoe(condition.getAgeGoe()),
+				ageLoe(condition.getAgeLoe())
+		};
+	}
+	
+	private BooleanExpression usernameEq(String username) {
+		SMember m = SMember.member;
+		return StringUtils.hasText(username) ? m.username.eq(username) : null;
+	}
+
+	private BooleanExpression teamNameEq(String teamName) {
+		STeam t = STeam.team;
+		return StringUtils.hasText(teamName) ? t.name.eq(teamName) : null;
+	}
+
+	private BooleanExpression ageGoe(Integer ageGoe) {
+		SMember m = SMember.member;
+		return ageGoe != null ? m.age.goe(ageGoe) : null;
+	}
+
+	private BooleanExpression ageLoe(Integer ageLoe) {
+		SMember m = SMember.member;
+		return ageLoe != null ? m.age.loe(ageLoe) : null;
+	}
+	
+}
@@ -0,0 +1,27 @@
+package study.querydsl.repository.sql;
+
+import javax.sql.DataSource;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.querydsl.sql.H2Templates;
+import com.querydsl.sql.SQLQueryFactory;
+import com.querydsl.sql.spring.SpringConnectionProvider;
+import com.querydsl.sql.spring.SpringExceptionTranslator;
+
+/**
+ * querydsl-sql : JPA 를 거치지 않는 조회 경로. (MemberSqlRepository)
+ * SpringConnectionProvider 는 트랜잭션에 묶인 커넥션만 쓰므로 JPA 트랜잭션과 같은 커넥션을 공유한다.
+ */
+@Configuration
+public class QuerydslSqlConfig {
+
+	@Bean
+	public SQLQueryFactory sqlQueryFactory(DataSource dataSource) {
+		com.querydsl.sql.Configuration configuration = new com.querydsl.sql.Configuration(H2Templates.builder().build());
+		configuration.setExceptionTranslator(new SpringExceptionTranslator());
+		return new SQLQueryFactory(configuration, new SpringConnectionProvider(dataSource));
+	}
+	
+}
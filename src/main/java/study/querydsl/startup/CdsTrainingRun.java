@@ -0,0 +1,30 @@
+package study.querydsl.startup;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * AppCDS 아카이브 생성용 학습 실행. (./gradlew cdsArchive)
+ * 기동 후 /v1/members 를 한 번 호출해 요청 경로의 클래스까지 로딩시킨 뒤 종료한다.
+ */
+@Component
+@ConditionalOnProperty(name = "querydsl.faststart.training-run", havingValue = "true")
+public class CdsTrainingRun {
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void exerciseAndExit(ApplicationReadyEvent event) {
+		ConfigurableApplicationContext context = event.getApplicationContext();
+		int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+		
+		new RestTemplate().getForObject("http://localhost:" + port + "/v1/members?teamName=teamA", String.class);
+		
+		System.exit(SpringApplication.exit(context));
+	}
+	
+}
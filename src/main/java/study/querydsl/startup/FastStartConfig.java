@@ -0,0 +1,27 @@
+package study.querydsl.startup;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import study.querydsl.controller.MemberController;
+
+/**
+ * faststart 프로필 (application-faststart.yml)
+ * 
+ * 빈은 기본적으로 lazy 로 만들되, 조회 경로(MemberController -> EntityManagerFactory)만 기동 시점에 만든다.
+ * EntityManagerFactory 는 deferred bootstrap 으로 백그라운드에서 만들어지므로 기동을 막지 않는다.
+ */
+@Configuration
+@Profile("faststart")
+public class FastStartConfig {
+
+	@Bean
+	static LazyInitializationExcludeFilter eagerSearchPath() {
+		return LazyInitializationExcludeFilter.forBeanTypes(MemberController.class, EntityManagerFactory.class);
+	}
+	
+}
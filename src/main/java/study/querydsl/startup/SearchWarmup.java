@@ -0,0 +1,215 @@
+package study.querydsl.startup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import lombok.extern.slf4j.Slf4j;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.jdbc.TableStatistics;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+
+/**
+ * 기동 직후 warm-up. (querydsl.warmup.enabled, 기본 true)
+ *
+ * 검색 조건 4개(username, teamName, ageGoe, ageLoe)의 16가지 조합으로 search / searchByBuilder 와 finder 를 반복 실행해
+ * Hibernate query plan cache, JIT(C2), 커넥션 풀을 채운다.
+ * 웹 서버가 떠 있으면 /v1/members 도 같은 조합으로 호출해 MVC, Jackson 경로까지 데운다.
+ *
+ * ApplicationRunner 에서 실행되므로 Boot 가 readiness 를 ACCEPTING_TRAFFIC 으로 바꾸기(러너가 모두 끝난 뒤) 전에 끝난다.
+ * warm-up 이 실패하거나 max-seconds 안에 끝나지 않으면 readiness 그룹에 포함된 이 health indicator 가
+ * OUT_OF_SERVICE 로 남아 /actuator/health/readiness 가 열리지 않는다.
+ * 데우다 만 상태로도 트래픽을 받으려면 querydsl.warmup.fail-open=true
+ *
+ * warm-up 자체가 큰 결과를 읽지 않도록 username 이 없는 조합은 결과가 없는 값(없는 팀, 범위 밖 나이)으로 조회한다.
+ * 조건이 하나도 없는 조합과 findAll / findAll_Querydsl 은 테이블 전체를 읽으므로
+ * member 건수가 max-unfiltered-rows 이하일 때만 실행한다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "querydsl.warmup.enabled", havingValue = "true", matchIfMissing = true)
+public class SearchWarmup implements ApplicationRunner, HealthIndicator {
+
+	private static final int SHAPES = 16;
+
+	private final ApplicationContext context;
+	private final MemberJpaRepository memberJpaRepository;
+	private final MemberRepository memberRepository;
+	private final TableStatistics tableStatistics;
+	private final int iterations;
+	private final int threads;
+	private final long maxSeconds;
+	private final long maxUnfilteredRows;
+	private final boolean failOpen;
+
+	private volatile boolean completed;
+	private volatile boolean failed;
+
+	public SearchWarmup(ApplicationContext context,
+			MemberJpaRepository memberJpaRepository,
+			MemberRepository memberRepository,
+			TableStatistics tableStatistics,
+			@Value("${querydsl.warmup.iterations:200}") int iterations,
+			@Value("${querydsl.warmup.threads:4}") int threads,
+			@Value("${querydsl.warmup.max-seconds:60}") long maxSeconds,
+			@Value("${querydsl.warmup.max-unfiltered-rows:10000}") long maxUnfilteredRows,
+			@Value("${querydsl.warmup.fail-open:false}") boolean failOpen) {
+		this.context = context;
+		this.memberJpaRepository = memberJpaRepository;
+		this.memberRepository = memberRepository;
+		this.iterations = iterations;
+		this.threads = threads;
+		this.maxSeconds = maxSeconds;
+		this.maxUnfilteredRows = maxUnfilteredRows;
+		this.tableStatistics = tableStatistics;
+		this.failOpen = failOpen;
+	}
+
+	public boolean isCompleted() {
+		return completed;
+	}
+
+	@Override
+	public Health health() {
+		if (completed) {
+			return Health.up().build();
+		}
+		if (failed && failOpen) {
+			return Health.up().withDetail("warmup", "aborted").build();
+		}
+		return Health.outOfService().withDetail("warmup", failed ? "aborted" : "running").build();
+	}
+
+	@Override
+	public void run(ApplicationArguments args) throws Exception {
+		long start = System.nanoTime();
+
+		MemberTeamDto sample = sample();
+		String baseUrl = baseUrl();
+		boolean unfiltered = tableStatistics.estimatedRowCount("member") <= maxUnfilteredRows;
+
+		// 스레드 수만큼 동시에 돌려 커넥션 풀도 그만큼 열리게 한다.
+		ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+			Thread thread = new Thread(r, "search-warmup");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				futures.add(executor.submit(() -> warmup(sample, baseUrl, unfiltered, iterations / threads + 1)));
+			}
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(maxSeconds);
+			for (Future<?> future : futures) {
+				future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			}
+			completed = true;
+		} catch (TimeoutException e) {
+			log.warn("search warm-up did not finish in {}s", maxSeconds);
+		} catch (ExecutionException e) {
+			log.warn("search warm-up failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		failed = !completed;
+
+		log.info("search warm-up {} in {}ms ({} iterations x {} shapes){}", completed ? "completed" : "aborted",
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), iterations, SHAPES,
+				failed && !failOpen ? ", readiness stays OUT_OF_SERVICE" : "");
+	}
+
+	private void warmup(MemberTeamDto sample, String baseUrl, boolean unfiltered, int count) {
+		RestTemplate restTemplate = new RestTemplate();
+		for (int i = 0; i < count && !Thread.currentThread().isInterrupted(); i++) {
+			for (int shape = unfiltered ? 0 : 1; shape < SHAPES; shape++) {
+				MemberSearchCondition condition = condition(shape, sample);
+				memberJpaRepository.search(condition);
+				memberJpaRepository.searchByBuilder(condition);
+				memberRepository.search(condition);
+				if (baseUrl != null) {
+					restTemplate.getForObject(uri(baseUrl, condition), String.class);
+				}
+			}
+			memberJpaRepository.findById(sample.getMemberId());
+			memberJpaRepository.findByUsername(sample.getUsername());
+			memberJpaRepository.findByUsername_Querydsl(sample.getUsername());
+			memberRepository.findById(sample.getMemberId());
+			memberRepository.findByUsername(sample.getUsername());
+			if (unfiltered) {
+				memberJpaRepository.findAll();
+				memberJpaRepository.findAll_Querydsl();
+				memberRepository.findAll();
+			}
+		}
+	}
+
+	/**
+	 * shape 의 비트 하나가 조건 하나 : 1 username, 2 teamName, 4 ageGoe, 8 ageLoe
+	 * username 이 있으면 sample 과 일치하는 값으로, 없으면 아무것도 걸리지 않는 값으로 채운다.
+	 */
+	private MemberSearchCondition condition(int shape, MemberTeamDto sample) {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		boolean selective = (shape & 1) != 0;
+		if (selective) {
+			condition.setUsername(sample.getUsername());
+		}
+		if ((shape & 2) != 0) {
+			condition.setTeamName(selective && sample.getTeamName() != null ? sample.getTeamName() : "warmup-no-such-team");
+		}
+		if ((shape & 4) != 0) {
+			condition.setAgeGoe(selective ? sample.getAge() : Integer.MAX_VALUE);
+		}
+		if ((shape & 8) != 0) {
+			condition.setAgeLoe(selective ? sample.getAge() : Integer.MIN_VALUE);
+		}
+		return condition;
+	}
+
+	// 실제 데이터가 있으면 그 값으로, 없으면 임의의 값으로 조회한다. (결과 매핑 경로까지 데우기 위해)
+	private MemberTeamDto sample() {
+		List<MemberTeamDto> first = memberJpaRepository.searchPage(new MemberSearchCondition(), PageRequest.of(0, 1), true).getContent();
+		return first.isEmpty() ? new MemberTeamDto(0L, "member1", 10, null, "teamA") : first.get(0);
+	}
+
+	private String baseUrl() {
+		if (context instanceof WebServerApplicationContext) {
+			int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+			if (port > 0) {
+				return "http://localhost:" + port;
+			}
+		}
+		return null;
+	}
+
+	private String uri(String baseUrl, MemberSearchCondition condition) {
+		return UriComponentsBuilder.fromHttpUrl(baseUrl)
+				.path("/v1/members")
+				.queryParamIfPresent("username", Optional.ofNullable(condition.getUsername()))
+				.queryParamIfPresent("teamName", Optional.ofNullable(condition.getTeamName()))
+				.queryParamIfPresent("ageGoe", Optional.ofNullable(condition.getAgeGoe()))
+				.queryParamIfPresent("ageLoe", Optional.ofNullable(condition.getAgeLoe()))
+				.toUriString();
+	}
+
+}
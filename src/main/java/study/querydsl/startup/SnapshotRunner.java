@@ -0,0 +1,47 @@
+package study.querydsl.startup;
+
+import java.nio.file.Paths;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import study.querydsl.jdbc.MemberSnapshot;
+
+/**
+ * 기동 시 스냅샷 복원 / 내보내기. (study.querydsl.jdbc.MemberSnapshot)
+ *
+ *   --querydsl.snapshot.restore=/data/members.snap : 비어 있는 DB 에 복원 (warm-up 보다 먼저)
+ *   --querydsl.snapshot.export=/data/members.snap  : 현재 데이터를 파일로
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class SnapshotRunner implements ApplicationRunner {
+
+	private final MemberSnapshot memberSnapshot;
+	private final String restore;
+	private final String export;
+
+	public SnapshotRunner(MemberSnapshot memberSnapshot,
+			@Value("${querydsl.snapshot.restore:}") String restore,
+			@Value("${querydsl.snapshot.export:}") String export) {
+		this.memberSnapshot = memberSnapshot;
+		this.restore = restore;
+		this.export = export;
+	}
+
+	@Override
+	public void run(ApplicationArguments args) {
+		if (StringUtils.hasText(restore)) {
+			memberSnapshot.restore(Paths.get(restore));
+		}
+		if (StringUtils.hasText(export)) {
+			memberSnapshot.export(Paths.get(export));
+		}
+	}
+
+}
@@ -0,0 +1,15 @@
+create trigger if not exists member_tombstone_trigger after delete on member for each row as $$
+org.h2.api.Trigger create() {
+    return new org.h2.tools.TriggerAdapter() {
+        @Override
+        public void fire(java.sql.Connection conn, java.sql.ResultSet oldRow, java.sql.ResultSet newRow) throws java.sql.SQLException {
+            try (java.sql.PreparedStatement insert = conn.prepareStatement(
+                    "merge into member_tombstone (member_id, team_id, deleted_at) key (member_id) values (?, ?, current_timestamp)")) {
+                insert.setLong(1, oldRow.getLong("MEMBER_ID"));
+                insert.setObject(2, oldRow.getObject("TEAM_ID"));
+                insert.executeUpdate();
+            }
+        }
+    };
+}
+$$
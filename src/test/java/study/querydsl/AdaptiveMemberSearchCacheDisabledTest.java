@@ -0,0 +1,59 @@
+package study.querydsl;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.env.Environment;
+import org.springframework.test.context.ActiveProfiles;
+
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.AdaptiveMemberSearch;
+import study.querydsl.repository.AdaptiveMemberSearch.Strategy;
+
+// CACHED 는 기본으로 꺼져 있다. (querydsl.adaptive.cache-enabled)
+@SpringBootTest(properties = {
+		"querydsl.adaptive.min-samples=2",
+		"querydsl.adaptive.cache-max-rows=1"
+})
+@ActiveProfiles("test")
+class AdaptiveMemberSearchCacheDisabledTest extends CommittedDataTest {
+
+	@Autowired
+	AdaptiveMemberSearch adaptiveMemberSearch;
+
+	@Autowired
+	Environment environment;
+
+	@BeforeEach
+	public void before() {
+		inTransaction(status -> em.persist(new Member("uncached", 10)));
+	}
+
+	// p6spy 를 거치지 않은 쓰기 (다른 인스턴스, 다른 프로세스) 뒤에도 최신 결과를 준다.
+	@Test
+	public void writeBypassingDataVersionIsSeen() throws Exception {
+		MemberSearchCondition selective = new MemberSearchCondition();
+		selective.setUsername("uncached");
+		for (int i = 0; i < 3; i++) {
+			Assertions.assertThat(adaptiveMemberSearch.search(selective)).extracting("age").containsExactly(10);
+		}
+		Assertions.assertThat(adaptiveMemberSearch.strategyFor(selective, false)).isEqualTo(Strategy.INDEXED);
+
+		try (Connection connection = DriverManager.getConnection(environment.getProperty("spring.datasource.url"),
+				environment.getProperty("spring.datasource.username"), environment.getProperty("spring.datasource.password"));
+				PreparedStatement update = connection.prepareStatement("update member set age = 99 where username = ?")) {
+			update.setString(1, "uncached");
+			Assertions.assertThat(update.executeUpdate()).isEqualTo(1);
+		}
+
+		Assertions.assertThat(adaptiveMemberSearch.search(selective)).extracting("age").containsExactly(99);
+	}
+
+}
@@ -0,0 +1,121 @@
+package study.querydsl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.AdaptiveMemberSearch;
+import study.querydsl.repository.AdaptiveMemberSearch.Strategy;
+
+// 구간 병렬 조회는 트랜잭션을 따로 연다.
+@SpringBootTest(properties = {
+		"querydsl.adaptive.min-samples=2",
+		"querydsl.adaptive.cache-enabled=true",
+		"querydsl.adaptive.cache-max-rows=1",
+		"querydsl.adaptive.parallel-min-rows=2",
+		"querydsl.adaptive.parallel-min-millis=0",
+		"querydsl.adaptive.streaming-min-rows=4",
+		"querydsl.adaptive.parallelism=2"
+})
+@ActiveProfiles("test")
+class AdaptiveMemberSearchTest extends CommittedDataTest {
+
+	@Autowired
+	AdaptiveMemberSearch adaptiveMemberSearch;
+
+	@Autowired
+	MeterRegistry meterRegistry;
+
+	@BeforeEach
+	public void before() {
+		inTransaction(status -> {
+			Team teamA = new Team("adaptiveTeamA");
+			em.persist(teamA);
+			for (int i = 1; i <= 4; i++) {
+				em.persist(new Member("adaptive" + i, i * 10, teamA));
+			}
+		});
+	}
+
+	@Test
+	public void strategyFollowsObservedRows() {
+		MemberSearchCondition selective = new MemberSearchCondition();
+		selective.setUsername("adaptive1");
+		MemberSearchCondition wide = new MemberSearchCondition();
+		wide.setAgeGoe(10);
+
+		// 관측이 쌓이기 전에는 INDEXED
+		for (int i = 0; i < 2; i++) {
+			Assertions.assertThat(adaptiveMemberSearch.strategyFor(selective, false)).isEqualTo(Strategy.INDEXED);
+			adaptiveMemberSearch.search(selective);
+			adaptiveMemberSearch.search(wide);
+		}
+
+		Assertions.assertThat(adaptiveMemberSearch.strategyFor(selective, false)).isEqualTo(Strategy.CACHED);
+		Assertions.assertThat(adaptiveMemberSearch.search(selective)).extracting("username").containsExactly("adaptive1");
+		Assertions.assertThat(adaptiveMemberSearch.search(selective)).extracting("username").containsExactly("adaptive1");
+
+		Assertions.assertThat(adaptiveMemberSearch.strategyFor(wide, false)).isEqualTo(Strategy.PARALLEL_RANGE);
+		// 경계값이 다른 열린 범위는 관측을 나눠 쓰지 않는다.
+		MemberSearchCondition older = new MemberSearchCondition();
+		older.setAgeGoe(90);
+		Assertions.assertThat(adaptiveMemberSearch.strategyFor(older, false)).isEqualTo(Strategy.INDEXED);
+		Assertions.assertThat(adaptiveMemberSearch.search(wide)).extracting("age").containsExactlyInAnyOrder(10, 20, 30, 40);
+
+		Assertions.assertThat(adaptiveMemberSearch.strategyFor(wide, true)).isEqualTo(Strategy.STREAMING);
+		List<MemberTeamDto> streamed = new ArrayList<>();
+		Assertions.assertThat(adaptiveMemberSearch.search(wide, streamed::add)).isEqualTo(4);
+		Assertions.assertThat(streamed).extracting("age").containsExactlyInAnyOrder(10, 20, 30, 40);
+
+		Assertions.assertThat(meterRegistry.get("member.search").tag("shape", "username").tag("strategy", "CACHED").timer().count()).isEqualTo(2);
+		Assertions.assertThat(meterRegistry.get("member.search").tag("shape", "ageGoe").tag("strategy", "PARALLEL_RANGE").timer().count()).isEqualTo(1);
+		Assertions.assertThat(meterRegistry.get("member.search").tag("shape", "ageGoe").tag("strategy", "STREAMING").timer().count()).isEqualTo(1);
+	}
+
+	@Test
+	public void cachedResultIsDroppedAfterWrite() {
+		// 다른 테스트와 관측이 섞이지 않도록 다른 모양을 쓴다.
+		MemberSearchCondition selective = new MemberSearchCondition();
+		selective.setUsername("adaptive2");
+		selective.setAgeGoe(0);
+		for (int i = 0; i < 3; i++) {
+			adaptiveMemberSearch.search(selective);
+		}
+		Assertions.assertThat(adaptiveMemberSearch.strategyFor(selective, false)).isEqualTo(Strategy.CACHED);
+
+		inTransaction(status -> em.createQuery("update Member m set m.age = 99 where m.username = 'adaptive2'").executeUpdate());
+		Assertions.assertThat(adaptiveMemberSearch.search(selective)).extracting("age").containsExactly(99);
+	}
+
+	// 값에 구분자가 들어가도 다른 조건의 캐시 결과를 돌려주지 않는다.
+	@Test
+	public void cachedResultKeyDoesNotCollide() {
+		inTransaction(status -> em.persist(new Member("adaptive|x", 50,
+				em.createQuery("select t from Team t where t.name = 'adaptiveTeamA'", Team.class).getSingleResult())));
+		MemberSearchCondition piped = new MemberSearchCondition();
+		piped.setUsername("adaptive|x");
+		piped.setTeamName("adaptiveTeamA");
+		MemberSearchCondition other = new MemberSearchCondition();
+		other.setUsername("adaptive");
+		other.setTeamName("x|adaptiveTeamA");
+		for (int i = 0; i < 2; i++) {
+			adaptiveMemberSearch.search(piped);
+		}
+		Assertions.assertThat(adaptiveMemberSearch.strategyFor(other, false)).isEqualTo(Strategy.CACHED);
+
+		Assertions.assertThat(adaptiveMemberSearch.search(piped)).extracting("age").containsExactly(50);
+		Assertions.assertThat(adaptiveMemberSearch.search(other)).isEmpty();
+	}
+
+}
@@ -0,0 +1,45 @@
+package study.querydsl;
+
+import java.util.function.Consumer;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 커밋된 데이터로 돌려야 하는 테스트의 공통 부분.
+ * 테스트 메서드는 트랜잭션 없이 돌고, 데이터는 inTransaction 으로 넣어 커밋한다. 테스트가 끝나면 모두 지운다.
+ * 
+ * 같은 TCP DB 를 쓰는 다른 사용자의 데이터를 지우지 않도록 전용 스키마(COMMITTED_DATA)에서 돈다.
+ * (INIT 의 ; 는 URL 에서 \; 로 적고, properties 형식이라 \ 를 한 번 더 이스케이프한다)
+ */
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:tcp://localhost/~/querydsl;"
+		+ "INIT=CREATE SCHEMA IF NOT EXISTS COMMITTED_DATA\\\\;SET SCHEMA COMMITTED_DATA")
+abstract class CommittedDataTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	void inTransaction(Consumer<TransactionStatus> action) {
+		new TransactionTemplate(transactionManager).executeWithoutResult(action);
+	}
+
+	// member_tombstone 은 member 삭제 트리거가 채우므로 member 뒤에 지운다.
+	@AfterEach
+	public void deleteAll() {
+		inTransaction(status -> {
+			em.createQuery("delete from Member").executeUpdate();
+			em.createQuery("delete from MemberTombstone").executeUpdate();
+			em.createQuery("delete from Team").executeUpdate();
+		});
+	}
+
+}
@@ -0,0 +1,87 @@
+package study.querydsl;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.assertj.core.api.Assertions;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberFetchPlan;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.sql.MemberSqlRepository;
+
+// 2차 캐시는 커밋된 뒤에 채워진다.
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+class MemberCacheTest extends CommittedDataTest {
+
+	@Autowired
+	MemberRepository memberRepository;
+
+	@Autowired
+	MemberJpaRepository memberJpaRepository;
+
+	@Autowired
+	MemberSqlRepository memberSqlRepository;
+
+	@Autowired
+	EntityManagerFactory emf;
+
+	Statistics statistics;
+	Team teamA;
+	Team teamB;
+	Member member1;
+
+	@BeforeEach
+	public void before() {
+		teamA = new Team("cacheTeamA");
+		teamB = new Team("cacheTeamB");
+		member1 = new Member("cached", 10, teamA);
+		inTransaction(status -> {
+			em.persist(teamA);
+			em.persist(teamB);
+			em.persist(member1);
+		});
+		statistics = emf.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+	}
+
+	@Test
+	public void findByUsernameHitsCache() {
+		Assertions.assertThat(memberRepository.findByUsername("cached")).extracting("id").containsExactly(member1.getId());
+		Assertions.assertThat(memberRepository.findByUsername("cached")).extracting("id").containsExactly(member1.getId());
+		// 같은 JPQL 이므로 같은 캐시 항목을 쓴다.
+		Assertions.assertThat(memberJpaRepository.findByUsername_Querydsl("cached")).extracting("id").containsExactly(member1.getId());
+
+		Assertions.assertThat(statistics.getQueryCacheMissCount()).isEqualTo(1);
+		Assertions.assertThat(statistics.getQueryCacheHitCount()).isEqualTo(2);
+		Assertions.assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+		// fetch join 은 캐시를 거치지 않는다.
+		Assertions.assertThat(memberRepository.findByUsername("cached", MemberFetchPlan.FETCH_JOIN)).hasSize(1);
+		Assertions.assertThat(statistics.getQueryCacheHitCount()).isEqualTo(2);
+	}
+
+	@Test
+	public void writesInvalidateCache() {
+		memberRepository.findByUsername("cached");
+
+		// Hibernate 를 거친 쓰기
+		inTransaction(status -> em.persist(new Member("cached", 20, teamA)));
+		Assertions.assertThat(memberRepository.findByUsername("cached")).extracting("age").containsExactlyInAnyOrder(10, 20);
+
+		// querydsl-sql 쓰기
+		inTransaction(status -> memberSqlRepository.renameTeam(teamA.getId(), "cacheTeamC"));
+		Assertions.assertThat(memberRepository.findByUsername("cached")).extracting("teamName").containsOnly("cacheTeamC");
+		Assertions.assertThat(statistics.getQueryCacheHitCount()).isZero();
+	}
+
+}
@@ -0,0 +1,113 @@
+package study.querydsl;
+
+import static org.assertj.core.groups.Tuple.tuple;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import study.querydsl.dto.MemberChangesDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberChangesRepository;
+import study.querydsl.repository.MemberRepository;
+
+// updated_at 은 트랜잭션 시작 시각이라 단계마다 커밋해야 구분된다.
+@SpringBootTest(properties = "querydsl.changes.settle-ms=0")
+@ActiveProfiles("test")
+class MemberChangesTest extends CommittedDataTest {
+
+	@Autowired
+	MemberChangesRepository memberChangesRepository;
+
+	@Autowired
+	MemberRepository memberRepository;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	Team teamA;
+	Member member1;
+	Member member2;
+
+	@BeforeEach
+	public void before() {
+		teamA = new Team("changesTeamA");
+		Team teamB = new Team("changesTeamB");
+		member1 = new Member("changes1", 10, teamA);
+		member2 = new Member("changes2", 20, teamA);
+		inTransaction(status -> {
+			em.persist(teamA);
+			em.persist(teamB);
+			em.persist(member1);
+			em.persist(member2);
+			em.persist(new Member("changes3", 30, teamB));
+		});
+	}
+
+	@Test
+	public void changesSince() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setTeamName("changesTeamA");
+
+		MemberChangesDto snapshot = memberChangesRepository.changesSince(condition, null);
+		Assertions.assertThat(snapshot.getUpserts()).extracting("username").containsExactlyInAnyOrder("changes1", "changes2");
+		Assertions.assertThat(snapshot.getRemoved()).isEmpty();
+
+		// 벌크 update 와 삭제
+		awaitDbClockAfter(snapshot.getToken());
+		inTransaction(status -> {
+			QMember m = QMember.member;
+			new JPAQueryFactory(em)
+					.update(m)
+					.set(m.age, m.age.add(1))
+					.where(m.id.eq(member1.getId()))
+					.execute();
+			em.remove(em.find(Member.class, member2.getId()));
+		});
+
+		MemberChangesDto changes = memberChangesRepository.changesSince(condition, snapshot.getToken());
+		Assertions.assertThat(changes.getUpserts()).extracting("username", "age").containsExactly(tuple("changes1", 11));
+		Assertions.assertThat(changes.getRemoved()).containsExactly(member2.getId());
+
+		// 팀 이름이 바뀌면 그 팀의 회원은 조건에서 빠진다.
+		awaitDbClockAfter(changes.getToken());
+		memberRepository.renameTeam(teamA.getId(), "changesTeamC");
+
+		MemberChangesDto renamed = memberChangesRepository.changesSince(condition, changes.getToken());
+		Assertions.assertThat(renamed.getUpserts()).isEmpty();
+		Assertions.assertThat(renamed.getRemoved()).containsExactly(member1.getId());
+
+		// 그 뒤로 바뀐 것이 없으면 빈 결과
+		MemberChangesDto none = memberChangesRepository.changesSince(condition, renamed.getToken());
+		Assertions.assertThat(none.getUpserts()).isEmpty();
+		Assertions.assertThat(none.getRemoved()).isEmpty();
+		Assertions.assertThat(none.getToken()).isGreaterThanOrEqualTo(renamed.getToken());
+	}
+
+	// 쓰기의 updated_at(트랜잭션 시작 시각)이 받은 token 보다 커야 다음 조회에 잡힌다. (token 과 같으면 이미 본 구간)
+	// 다음 조회의 cutoff 는 쓰기가 커밋된 뒤의 DB 시각이라 따로 기다리지 않아도 쓰기 시각 이상이다.
+	private void awaitDbClockAfter(long token) {
+		while (toMicros(jdbcTemplate.queryForObject("select current_timestamp", Timestamp.class)) <= token) {
+			Thread.yield();
+		}
+	}
+
+	private static long toMicros(Timestamp timestamp) {
+		Instant instant = timestamp.toInstant();
+		return TimeUnit.SECONDS.toMicros(instant.getEpochSecond()) + TimeUnit.NANOSECONDS.toMicros(instant.getNano());
+	}
+
+}
@@ -0,0 +1,168 @@
+package study.querydsl;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import study.querydsl.controller.MemberController;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.Team;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+@ActiveProfiles("test")
+class MemberControllerTest {
+
+	@Autowired
+	MockMvc mockMvc;
+	
+	@Autowired
+	EntityManager em;
+	
+	@BeforeEach
+	public void before() {
+		Team teamA = new Team("teamA");
+		em.persist(teamA);
+		
+		em.persist(new Member("member1", 10, teamA));
+		em.persist(new Member("member2", 20, teamA));
+		em.flush();
+	}
+	
+	@Test
+	public void notModified() throws Exception {
+		String etag = mockMvc.perform(get("/v1/members").param("teamName", "teamA"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		
+		Assertions.assertThat(etag).isNotBlank();
+		
+		mockMvc.perform(get("/v1/members").param("teamName", "teamA").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isNotModified());
+		
+		// 조건이 다르면 같은 데이터 버전이라도 다른 ETag
+		mockMvc.perform(get("/v1/members").param("teamName", "teamB").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isOk());
+	}
+	
+	// 조건 목록의 null, 빈 조건은 NPE 나 전체 조회가 아니라 400
+	@Test
+	public void searchBatchRejectsNullOrEmptyCondition() throws Exception {
+		for (String body : new String[] { "[{\"teamName\":\"teamA\"},null]", "[{\"teamName\":\"teamA\"},{}]" }) {
+			mockMvc.perform(post("/v1/members/search:batch").contentType(MediaType.APPLICATION_JSON).content(body))
+					.andExpect(status().isBadRequest());
+		}
+		mockMvc.perform(post("/v1/members/search:batch").contentType(MediaType.APPLICATION_JSON).content("[{\"teamName\":\"teamA\"}]"))
+				.andExpect(status().isOk());
+	}
+	
+	// bulk 연산도 데이터 버전을 올린다.
+	@Test
+	public void modifiedByBulkUpdate() throws Exception {
+		QMember m = QMember.member;
+		
+		String etag = mockMvc.perform(get("/v1/members"))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		
+		new JPAQueryFactory(em)
+				.update(m)
+				.set(m.age, m.age.add(1))
+				.execute();
+		
+		mockMvc.perform(get("/v1/members").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isOk());
+	}
+	
+	@Test
+	public void flightRecorderEvents() throws Exception {
+		Path file = Files.createTempFile("member-controller", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("study.querydsl.MemberRequest");
+			recording.enable("study.querydsl.MemberQuery");
+			recording.start();
+			mockMvc.perform(get("/v1/members").param("teamName", "teamA"))
+					.andExpect(status().isOk());
+			recording.stop();
+			recording.dump(file);
+		}
+		List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+		Files.delete(file);
+		
+		RecordedEvent query = only(events, "study.querydsl.MemberQuery");
+		Assertions.assertThat(query.getString("method")).isEqualTo("search");
+		Assertions.assertThat(query.getString("shape")).isEqualTo("teamName");
+		Assertions.assertThat(query.getInt("rows")).isEqualTo(2);
+		Assertions.assertThat(query.getDuration("sqlTime")).isPositive();
+		
+		RecordedEvent request = only(events, "study.querydsl.MemberRequest");
+		Assertions.assertThat(request.getString("endpoint")).isEqualTo("GET /v1/members");
+		Assertions.assertThat(request.getInt("rows")).isEqualTo(2);
+		Assertions.assertThat(request.getDuration("serializationTime")).isPositive();
+		Assertions.assertThat(request.getDuration("sqlTime")).isGreaterThanOrEqualTo(query.getDuration("sqlTime"));
+	}
+	
+	// X-Request-Timeout 요청도 같은 검색 경로를 타고 요청 이벤트를 남긴다. (검색 스레드에서 기록)
+	@Test
+	public void flightRecorderEventsWithDeadline() throws Exception {
+		Path file = Files.createTempFile("member-controller", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("study.querydsl.MemberRequest");
+			recording.enable("study.querydsl.MemberQuery");
+			recording.start();
+			MvcResult result = mockMvc.perform(get("/v1/members").param("teamName", "teamA")
+							.header(MemberController.REQUEST_TIMEOUT_HEADER, 5000))
+					.andExpect(request().asyncStarted())
+					.andReturn();
+			mockMvc.perform(asyncDispatch(result))
+					.andExpect(status().isOk());
+			recording.stop();
+			recording.dump(file);
+		}
+		List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+		Files.delete(file);
+		
+		Assertions.assertThat(only(events, "study.querydsl.MemberQuery").getString("method")).isEqualTo("search");
+		RecordedEvent request = only(events, "study.querydsl.MemberRequest");
+		Assertions.assertThat(request.getString("endpoint")).isEqualTo("GET /v1/members");
+		Assertions.assertThat(request.getString("shape")).isEqualTo("teamName");
+	}
+	
+	private RecordedEvent only(List<RecordedEvent> events, String name) {
+		List<RecordedEvent> matched = events.stream()
+				.filter(e -> e.getEventType().getName().equals(name))
+				.collect(Collectors.toList());
+		Assertions.assertThat(matched).hasSize(1);
+		return matched.get(0);
+	}
+	
+}
@@ -3,20 +3,32 @@ package study.querydsl;
 import java.util.List;
 
 import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
 
 import org.assertj.core.api.Assertions;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.transaction.annotation.Transactional;
 
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.MemberTeamPage;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
+import study.querydsl.jdbc.TableStatistics;
+import study.querydsl.repository.MemberFetchPlan;
+import study.querydsl.repository.MemberCache;
 import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.ReadOnlyQueries;
+import study.querydsl.repository.UsernameFilter;
 
 @SpringBootTest
 @Transactional
@@ -29,6 +41,15 @@ class MemberJpaRepositoryTest {
 	@Autowired
 	private MemberJpaRepository memberJpaRepository;
 	
+	@Autowired
+	private TableStatistics tableStatistics;
+	
+	@Autowired
+	private MemberCache memberCache;
+	
+	@Autowired
+	private UsernameFilter usernameFilter;
+	
 	@Test
 	public void basicTest() {
 		
@@ -99,4 +120,186 @@ class MemberJpaRepositoryTest {
 		
 	}
 	
+	@Test
+	public void searchPageApproximateTotal() {
+		Team teamA = new Team("teamA");
+		em.persist(teamA);
+		for (int i = 0; i < 200; i++) {
+			memberJpaRepository.save(new Member("member" + i, i, teamA));
+		}
+		em.flush();
+		long count = em.createQuery("select count(m) from Member m", Long.class).getSingleResult();
+		
+		// 추정치는 정확한 count 의 10% 안쪽이어야 한다.
+		MemberTeamPage approximate = memberJpaRepository.searchPage(new MemberSearchCondition(), PageRequest.of(0, 2), true);
+		Assertions.assertThat(approximate.getContent()).hasSize(2);
+		Assertions.assertThat(approximate.isTotalApproximate()).isTrue();
+		Assertions.assertThat(approximate.getTotalElements()).isCloseTo(count, Assertions.withinPercentage(10));
+		
+		// 조건이 있으면 정확한 count
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setTeamName("teamA");
+		MemberTeamPage exact = memberJpaRepository.searchPage(condition, PageRequest.of(0, 2), true);
+		Assertions.assertThat(exact.isTotalApproximate()).isFalse();
+		Assertions.assertThat(exact.getTotalElements()).isEqualTo(200);
+		
+		// 마지막 페이지는 content 로 전체 건수를 안다.
+		condition.setUsername("member3");
+		MemberTeamPage single = memberJpaRepository.searchPage(condition, PageRequest.of(0, 2), true);
+		Assertions.assertThat(single.getTotalElements()).isEqualTo(1);
+	}
+	
+	@Test
+	public void searchPageSort() {
+		Team teamA = new Team("teamA");
+		em.persist(teamA);
+		for (int i = 0; i < 5; i++) {
+			memberJpaRepository.save(new Member("member" + i, i % 2, teamA));
+		}
+		em.flush();
+		
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setTeamName("teamA");
+		MemberTeamPage page = memberJpaRepository.searchPage(condition, PageRequest.of(0, 3, Sort.by(Sort.Direction.DESC, "age")), false);
+		
+		// 같은 나이는 memberId 순
+		Assertions.assertThat(page.getContent()).extracting("username").containsExactly("member1", "member3", "member0");
+		Assertions.assertThatThrownBy(() -> memberJpaRepository.searchPage(condition, PageRequest.of(0, 3, Sort.by("updatedAt")), false))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+	
+	@Test
+	public void fetchPlans() {
+		Team teamA = new Team("teamA");
+		Team teamB = new Team("teamB");
+		em.persist(teamA);
+		em.persist(teamB);
+		Member member1 = new Member("member1", 10, teamA);
+		em.persist(member1);
+		em.persist(new Member("member2", 20, teamB));
+		em.flush();
+		em.clear();
+		
+		PersistenceUnitUtil util = em.getEntityManagerFactory().getPersistenceUnitUtil();
+		
+		for (MemberFetchPlan fetchPlan : MemberFetchPlan.values()) {
+			List<Member> members = memberJpaRepository.findAll(fetchPlan);
+			Member byUsername = memberJpaRepository.findByUsername("member1", fetchPlan).get(0);
+			Member byId = memberJpaRepository.findById(member1.getId(), fetchPlan).get();
+			
+			boolean loaded = fetchPlan != MemberFetchPlan.PROXY;
+			Assertions.assertThat(members).hasSize(2)
+					.allSatisfy(m -> Assertions.assertThat(util.isLoaded(m.getTeam())).as(fetchPlan.name()).isEqualTo(loaded));
+			Assertions.assertThat(util.isLoaded(byUsername.getTeam())).as(fetchPlan.name()).isEqualTo(loaded);
+			Assertions.assertThat(util.isLoaded(byId.getTeam())).as(fetchPlan.name()).isEqualTo(loaded);
+			em.clear();
+		}
+		
+		// 회원 2명, 팀 2개 : finder 한 번에 나가는 쿼리 수
+		Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+		boolean statisticsEnabled = statistics.isStatisticsEnabled();
+		statistics.setStatisticsEnabled(true);
+		try {
+			Assertions.assertThat(statements(() -> memberJpaRepository.findAll(MemberFetchPlan.PROXY))).isEqualTo(1);
+			// PROXY 로 팀에 접근하면 팀마다 한 번씩 더 나간다. (N+1)
+			Assertions.assertThat(statements(() -> memberJpaRepository.findAll(MemberFetchPlan.PROXY)
+					.forEach(m -> m.getTeam().getName()))).isEqualTo(3);
+			Assertions.assertThat(statements(() -> memberJpaRepository.findAll(MemberFetchPlan.FETCH_JOIN))).isEqualTo(1);
+			Assertions.assertThat(statements(() -> memberJpaRepository.findAll(MemberFetchPlan.BATCH))).isEqualTo(2);
+			
+			Assertions.assertThat(statements(() -> memberJpaRepository.findByUsername("member1", MemberFetchPlan.PROXY))).isEqualTo(1);
+			Assertions.assertThat(statements(() -> memberJpaRepository.findByUsername("member1", MemberFetchPlan.FETCH_JOIN))).isEqualTo(1);
+			Assertions.assertThat(statements(() -> memberJpaRepository.findByUsername("member1", MemberFetchPlan.BATCH))).isEqualTo(2);
+			
+			Assertions.assertThat(statements(() -> memberJpaRepository.findById(member1.getId(), MemberFetchPlan.PROXY))).isEqualTo(1);
+			Assertions.assertThat(statements(() -> memberJpaRepository.findById(member1.getId(), MemberFetchPlan.FETCH_JOIN))).isEqualTo(1);
+			Assertions.assertThat(statements(() -> memberJpaRepository.findById(member1.getId(), MemberFetchPlan.BATCH))).isEqualTo(2);
+		} finally {
+			statistics.setStatisticsEnabled(statisticsEnabled);
+		}
+	}
+	
+	// 영속성 컨텍스트와 2차 캐시를 비운 상태에서 finder 가 준비한 statement 수
+	private long statements(Runnable finder) {
+		SessionFactory sessionFactory = em.getEntityManagerFactory().unwrap(SessionFactory.class);
+		em.clear();
+		sessionFactory.getCache().evictAllRegions();
+		sessionFactory.getStatistics().clear();
+		finder.run();
+		return sessionFactory.getStatistics().getPrepareStatementCount();
+	}
+	
+	// read-only 트랜잭션에서 조회 메서드로 가져온 엔티티는 read-only : 스냅샷이 없고 변경해도 flush 되지 않는다.
+	@Test
+	@Transactional(readOnly = true)
+	public void readOnlyQueries() {
+		em.persist(new Member("member1", 10));
+		em.flush();
+		em.clear();
+		
+		Member findMember = memberJpaRepository.findByUsername_Querydsl("member1").get(0);
+		Assertions.assertThat(em.unwrap(Session.class).isReadOnly(findMember)).isTrue();
+		
+		findMember.setAge(99);
+		em.flush();
+		em.clear();
+		
+		Assertions.assertThat(memberJpaRepository.findById(findMember.getId()).get().getAge()).isEqualTo(10);
+	}
+	
+	// 조회 전용 모드를 끄면 read-only 트랜잭션에서도 관리 엔티티로 올라와 스냅샷을 가진다.
+	@Test
+	@Transactional(readOnly = true)
+	public void readOnlyQueriesDisabled() {
+		em.persist(new Member("member1", 10));
+		em.flush();
+		em.clear();
+		
+		MemberJpaRepository managed = new MemberJpaRepository(em, new ReadOnlyQueries(false), tableStatistics, memberCache, usernameFilter);
+		Member findMember = managed.findByUsername_Querydsl("member1").get(0);
+		Assertions.assertThat(em.unwrap(Session.class).isReadOnly(findMember)).isFalse();
+	}
+	
+	// 쓰기 트랜잭션에서는 조회 메서드로 가져온 엔티티도 변경이 반영된다.
+	@Test
+	public void readOnlyQueriesKeepWritesInWriteTransaction() {
+		memberJpaRepository.save(new Member("member1", 10));
+		em.flush();
+		em.clear();
+		
+		Member findMember = memberJpaRepository.findByUsername("member1").get(0);
+		Assertions.assertThat(em.unwrap(Session.class).isReadOnly(findMember)).isFalse();
+		
+		findMember.setAge(99);
+		em.flush();
+		em.clear();
+		
+		Assertions.assertThat(memberJpaRepository.findById(findMember.getId()).get().getAge()).isEqualTo(99);
+	}
+	
+	// 같은 팀 회원들의 teamName 은 한 인스턴스를 공유한다. (MemberTeamProjection)
+	@Test
+	public void searchSharesTeamValues() {
+		Team teamA = new Team("teamA");
+		em.persist(teamA);
+		for (int i = 0; i < 10; i++) {
+			em.persist(new Member("member" + i, i, teamA));
+		}
+		em.persist(new Member("noTeam", 10));
+		em.flush();
+		em.clear();
+		
+		List<MemberTeamDto> result = memberJpaRepository.search(new MemberSearchCondition());
+		
+		MemberTeamDto first = result.stream().filter(dto -> dto.getTeamName() != null).findFirst().get();
+		Assertions.assertThat(result).hasSize(11);
+		for (MemberTeamDto dto : result) {
+			if (dto.getTeamName() != null) {
+				Assertions.assertThat(dto.getTeamName()).isSameAs(first.getTeamName());
+				// teamId 는 -128~127 이면 Long 캐시 때문에 공유하지 않아도 같은 인스턴스라 값만 본다.
+				Assertions.assertThat(dto.getTeamId()).isEqualTo(first.getTeamId());
+			}
+		}
+	}
+	
 }
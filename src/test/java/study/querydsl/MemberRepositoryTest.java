@@ -1,8 +1,10 @@
 package study.querydsl;
 
+import java.util.Arrays;
 import java.util.List;
 
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
 
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -15,6 +17,7 @@ import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
+import study.querydsl.jdbc.TeamNameConsistency;
 import study.querydsl.repository.MemberRepository;
 
 @SpringBootTest
@@ -28,6 +31,9 @@ class MemberRepositoryTest {
 	@Autowired
 	private EntityManager em;
 	
+	@Autowired
+	TeamNameConsistency teamNameConsistency;
+	
 	@Test
 	public void basicTest() {
 		
@@ -78,4 +84,82 @@ class MemberRepositoryTest {
 		Assertions.assertThat(result).extracting("username").containsExactly("member3", "member4");
 	}
 	
+	@Test
+	public void reassignTeam() {
+		Team teamA = new Team("teamA");
+		Team teamB = new Team("teamB");
+		em.persist(teamA);
+		em.persist(teamB);
+		
+		Member member1 = new Member("member1", 10, teamA);
+		Member member2 = new Member("member2", 20, teamA);
+		Member member3 = new Member("member3", 30, teamB);
+		em.persist(member1);
+		em.persist(member2);
+		em.persist(member3);
+		
+		em.flush();
+		em.clear();
+		
+		Team findTeamB = em.find(Team.class, teamB.getId());
+		Member findMember1 = em.find(Member.class, member1.getId());
+		
+		long count = memberRepository.reassignTeam(Arrays.asList(member1.getId(), member2.getId()), teamB.getId());
+		
+		EntityManagerFactory emf = em.getEntityManagerFactory();
+		Assertions.assertThat(count).isEqualTo(2);
+		Assertions.assertThat(findMember1.getTeam().getId()).isEqualTo(teamB.getId());
+		Assertions.assertThat(emf.getPersistenceUnitUtil().isLoaded(findTeamB, "members")).isFalse();
+		
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setTeamName("teamB");
+		Assertions.assertThat(memberRepository.search(condition)).extracting("username")
+				.containsExactlyInAnyOrder("member1", "member2", "member3");
+	}
+	
+	// 테스트 설정은 denormalized-team-name=true : search 는 member.team_name 만 본다.
+	@Test
+	public void renameTeam() {
+		Team teamA = new Team("teamA");
+		em.persist(teamA);
+		Member member1 = new Member("member1", 10, teamA);
+		em.persist(member1);
+		em.persist(new Member("member2", 20, teamA));
+		
+		long count = memberRepository.renameTeam(teamA.getId(), "teamC");
+		
+		Assertions.assertThat(count).isEqualTo(2);
+		Assertions.assertThat(teamA.getName()).isEqualTo("teamC");
+		Assertions.assertThat(member1.getTeamName()).isEqualTo("teamC");
+		
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setTeamName("teamC");
+		Assertions.assertThat(memberRepository.search(condition))
+				.extracting("username", "teamId", "teamName")
+				.containsExactlyInAnyOrder(
+						Assertions.tuple("member1", teamA.getId(), "teamC"),
+						Assertions.tuple("member2", teamA.getId(), "teamC"));
+	}
+	
+	@Test
+	public void repairTeamNameDrift() {
+		Team teamA = new Team("teamA");
+		em.persist(teamA);
+		em.persist(new Member("member1", 10, teamA));
+		em.persist(new Member("member2", 20));
+		em.flush();
+		
+		// 복제 값을 거치지 않고 직접 바꾼 경우
+		em.createNativeQuery("update member set team_name = 'teamX' where username = 'member1'").executeUpdate();
+		em.clear();
+		
+		Assertions.assertThat(teamNameConsistency.countDrifted()).isEqualTo(1);
+		Assertions.assertThat(teamNameConsistency.repair()).isEqualTo(1);
+		Assertions.assertThat(teamNameConsistency.countDrifted()).isZero();
+		
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setTeamName("teamA");
+		Assertions.assertThat(memberRepository.search(condition)).extracting("username").containsExactly("member1");
+	}
+	
 }
@@ -0,0 +1,119 @@
+package study.querydsl;
+
+import static org.assertj.core.groups.Tuple.tuple;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.jdbc.MemberSnapshot;
+import study.querydsl.repository.MemberRepository;
+
+// 복원은 비어 있는 테이블에만 하므로 커밋된 데이터로 내보내고 지운 뒤 복원한다.
+@SpringBootTest
+@ActiveProfiles("test")
+class MemberSnapshotTest extends CommittedDataTest {
+
+	@Autowired
+	MemberSnapshot memberSnapshot;
+
+	@Autowired
+	MemberRepository memberRepository;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	Path file;
+
+	@BeforeEach
+	public void before() throws Exception {
+		inTransaction(status -> {
+			Team teamA = new Team("snapshotTeamA");
+			em.persist(teamA);
+			em.persist(new Team("snapshotTeamB"));
+			em.persist(new Member("snapshot1", 10, teamA));
+			em.persist(new Member("스냅샷2", 20, teamA));
+			em.persist(new Member(null, 30));
+		});
+		file = Files.createTempFile("members", ".snap");
+	}
+
+	@AfterEach
+	public void deleteFile() throws Exception {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void exportAndRestore() {
+		String members = "select member_id, username, age, team_id, team_name from member order by member_id";
+		Object before = jdbcTemplate.queryForList(members);
+
+		memberSnapshot.export(file);
+		deleteAll();
+
+		Assertions.assertThat(memberSnapshot.restore(file)).isEqualTo(3);
+		Assertions.assertThat(jdbcTemplate.queryForList(members)).isEqualTo(before);
+		Assertions.assertThat(jdbcTemplate.queryForObject("select count(*) from team", Long.class)).isEqualTo(2);
+
+		// 시퀀스가 복원된 id 뒤로 밀려 있어야 한다.
+		inTransaction(status -> em.persist(new Member("snapshot4", 40)));
+		Assertions.assertThat(memberRepository.findByUsername("snapshot4")).hasSize(1);
+		Assertions.assertThat(memberRepository.findByUsername("snapshot1")).extracting("age", "teamName")
+				.containsExactly(tuple(10, "snapshotTeamA"));
+	}
+
+	// 복원된 id 가 이 인스턴스가 받아 둔 pooled-lo 블록보다 뒤에 있어도 겹치는 id 를 내주지 않는다.
+	@Test
+	public void restoreSkipsAllocatedIdBlock() {
+		Long maxId = jdbcTemplate.queryForObject("select max(member_id) from member", Long.class);
+		// 블록 크기(50)보다 넓게 : 메모리에 남은 블록의 나머지 id 를 모두 차지한다.
+		for (int i = 1; i <= 100; i++) {
+			jdbcTemplate.update("insert into member (member_id, username, age) values (?, ?, ?)", maxId + i, "restored" + i, i);
+		}
+		memberSnapshot.export(file);
+		deleteAll();
+		Assertions.assertThat(memberSnapshot.restore(file)).isEqualTo(103);
+
+		Member member = new Member("snapshot4", 40);
+		inTransaction(status -> em.persist(member));
+		Assertions.assertThat(member.getId()).isGreaterThan(maxId + 100);
+		Assertions.assertThat(jdbcTemplate.queryForObject("select count(*) from member", Long.class)).isEqualTo(104);
+	}
+
+	@Test
+	public void corruptedSnapshotIsRejected() throws Exception {
+		memberSnapshot.export(file);
+		deleteAll();
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] { 'X' }), 20);
+		}
+
+		Assertions.assertThatThrownBy(() -> memberSnapshot.restore(file))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("checksum");
+		Assertions.assertThat(jdbcTemplate.queryForObject("select count(*) from member", Long.class)).isZero();
+	}
+
+	@Test
+	public void restoreRequiresEmptyTables() throws Exception {
+		memberSnapshot.export(file);
+
+		Assertions.assertThatThrownBy(() -> memberSnapshot.restore(file))
+				.isInstanceOf(IllegalStateException.class);
+	}
+
+}
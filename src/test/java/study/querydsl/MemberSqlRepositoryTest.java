@@ -0,0 +1,155 @@
+package study.querydsl;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.querydsl.core.types.Path;
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.RelationalPath;
+
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.sql.MemberSqlRepository;
+import study.querydsl.repository.sql.SMember;
+import study.querydsl.repository.sql.STeam;
+
+@SpringBootTest
+@Transactional
+@ActiveProfiles("test")
+class MemberSqlRepositoryTest {
+
+	@Autowired
+	EntityManager em;
+	
+	@Autowired
+	MemberSqlRepository memberSqlRepository;
+	
+	@Autowired
+	MemberRepository memberRepository;
+	
+	@Autowired
+	DataSource dataSource;
+	
+	Team teamA;
+	Team teamB;
+	
+	@BeforeEach
+	public void before() {
+		teamA = new Team("teamA");
+		teamB = new Team("teamB");
+		em.persist(teamA);
+		em.persist(teamB);
+		
+		em.persist(new Member("member1", 10, teamA));
+		em.persist(new Member("member2", 20, teamA));
+		em.persist(new Member("member3", 30, teamB));
+		em.persist(new Member("member4", 40, teamB));
+		em.persist(new Member("member5", 50));
+		// SQL 경로는 영속성 컨텍스트를 보지 않으므로 DB 에 내려둔다.
+		em.flush();
+	}
+	
+	@Test
+	public void search() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setAgeGoe(20);
+		condition.setAgeLoe(40);
+		condition.setTeamName("teamB");
+		
+		List<MemberTeamDto> result = memberSqlRepository.search(condition);
+		
+		Assertions.assertThat(result).extracting("username").containsExactly("member3", "member4");
+		Assertions.assertThat(result).extracting("teamId").containsOnly(teamB.getId());
+	}
+	
+	// 팀이 없는 회원도 left join 으로 포함되고, JPA 경로와 같은 결과를 낸다.
+	@Test
+	public void sameResultAsJpa() {
+		MemberSearchCondition all = new MemberSearchCondition();
+		MemberSearchCondition byUsername = new MemberSearchCondition();
+		byUsername.setUsername("member5");
+		MemberSearchCondition byAge = new MemberSearchCondition();
+		byAge.setAgeGoe(30);
+		
+		for (MemberSearchCondition condition : Arrays.asList(all, byUsername, byAge)) {
+			Assertions.assertThat(memberSqlRepository.search(condition))
+					.containsExactlyInAnyOrderElementsOf(memberRepository.search(condition));
+		}
+	}
+	
+	@Test
+	public void reassignTeam() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setUsername("member1");
+		Long memberId = memberSqlRepository.search(condition).get(0).getMemberId();
+		
+		long count = memberSqlRepository.reassignTeam(Arrays.asList(memberId), teamB.getId());
+		
+		Assertions.assertThat(count).isEqualTo(1);
+		Assertions.assertThat(memberSqlRepository.search(condition)).extracting("teamName").containsExactly("teamB");
+	}
+	
+	// 조건별 결과가 각각 search 한 것과 같다. (겹치는 회원은 양쪽에 나온다)
+	@Test
+	public void searchBatch() {
+		MemberSearchCondition byUsername = new MemberSearchCondition();
+		byUsername.setUsername("member3");
+		MemberSearchCondition byTeam = new MemberSearchCondition();
+		byTeam.setTeamName("teamB");
+		MemberSearchCondition byAge = new MemberSearchCondition();
+		byAge.setAgeGoe(40);
+		MemberSearchCondition none = new MemberSearchCondition();
+		none.setUsername("nobody");
+		List<MemberSearchCondition> conditions = Arrays.asList(byUsername, byTeam, byAge, none);
+		
+		List<List<MemberTeamDto>> results = memberSqlRepository.searchBatch(conditions);
+		
+		Assertions.assertThat(results).hasSize(conditions.size());
+		for (int i = 0; i < conditions.size(); i++) {
+			Assertions.assertThat(results.get(i)).containsExactlyInAnyOrderElementsOf(memberSqlRepository.search(conditions.get(i)));
+		}
+		Assertions.assertThat(results.get(1)).extracting("username").containsExactlyInAnyOrder("member3", "member4");
+		Assertions.assertThat(results.get(3)).isEmpty();
+	}
+	
+	// SMember, STeam 은 손으로 관리하므로 Hibernate 가 만든 스키마와 컬럼(이름, 타입, not null)이 같은지 확인한다.
+	@Test
+	public void metadataMatchesSchema() throws Exception {
+		for (RelationalPath<?> table : Arrays.<RelationalPath<?>>asList(SMember.member, STeam.team)) {
+			Map<String, String> expected = new TreeMap<>();
+			for (Path<?> column : table.getColumns()) {
+				ColumnMetadata metadata = table.getMetadata(column);
+				expected.put(metadata.getName(), metadata.getJdbcType() + (metadata.isNullable() ? "" : " not null"));
+			}
+			
+			Map<String, String> actual = new TreeMap<>();
+			try (Connection connection = dataSource.getConnection();
+					ResultSet rs = connection.getMetaData().getColumns(null, table.getSchemaName(), table.getTableName(), null)) {
+				while (rs.next()) {
+					actual.put(rs.getString("COLUMN_NAME"), rs.getInt("DATA_TYPE") + ("NO".equals(rs.getString("IS_NULLABLE")) ? " not null" : ""));
+				}
+			}
+			
+			Assertions.assertThat(expected).as(table.getTableName()).isEqualTo(actual);
+		}
+	}
+	
+}
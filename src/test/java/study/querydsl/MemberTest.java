@@ -4,6 +4,8 @@ import java.util.List;
 
 import javax.persistence.EntityManager;
 
+import org.assertj.core.api.Assertions;
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -51,5 +53,41 @@ class MemberTest {
 			System.out.println(member.getTeam());
 		}
 	}
+	
+	// 엔티티별 시퀀스 : team insert 가 끼어도 member id 는 연속으로 할당된다.
+	@Test
+	void perEntitySequence() {
+		Team teamA = new Team("teamA");
+		em.persist(teamA);
+		Member member1 = new Member("member1", 10, teamA);
+		em.persist(member1);
+		
+		Team teamB = new Team("teamB");
+		em.persist(teamB);
+		Member member2 = new Member("member2", 20, teamB);
+		em.persist(member2);
+		
+		Assertions.assertThat(member2.getId()).isEqualTo(member1.getId() + 1);
+		Assertions.assertThat(teamB.getId()).isEqualTo(teamA.getId() + 1);
+	}
+
+	
+	// 팀 인원이 많아도 회원 배정 시 team.members 를 로딩하지 않는다.
+	@Test
+	void changeTeamWithoutLoadingMembers() {
+		Team teamA = new Team("teamA");
+		em.persist(teamA);
+		em.persist(new Member("member1", 10, teamA));
+		
+		em.flush();
+		em.clear();
+		
+		Team findTeam = em.find(Team.class, teamA.getId());
+		Member member2 = new Member("member2", 20, findTeam);
+		em.persist(member2);
+		
+		Assertions.assertThat(member2.getTeam()).isSameAs(findTeam);
+		Assertions.assertThat(Hibernate.isInitialized(findTeam.getMembers())).isFalse();
+	}
 
 }
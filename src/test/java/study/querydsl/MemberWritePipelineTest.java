@@ -0,0 +1,97 @@
+package study.querydsl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityNotFoundException;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberWritePipeline;
+
+// interval 을 늘려 연달아 넣은 변경이 한 번에 커밋되게 한다.
+@SpringBootTest(properties = {
+		"querydsl.write-pipeline.enabled=true",
+		"querydsl.write-pipeline.interval-ms=200"
+})
+@ActiveProfiles("test")
+class MemberWritePipelineTest {
+
+	@Autowired
+	MemberWritePipeline memberWritePipeline;
+	
+	@Autowired
+	EntityManager em;
+	
+	@Autowired
+	PlatformTransactionManager transactionManager;
+	
+	// 파이프라인은 별도 트랜잭션으로 커밋하므로 직접 정리한다.
+	@AfterEach
+	public void after() {
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			em.createQuery("delete from Member").executeUpdate();
+			em.createQuery("delete from Team").executeUpdate();
+		});
+	}
+	
+	@Test
+	public void coalesceWrites() {
+		Team teamA = new Team("teamA");
+		Team teamB = new Team("teamB");
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			em.persist(teamA);
+			em.persist(teamB);
+		});
+		
+		Member member1 = memberWritePipeline.save(new Member("member1", 10, teamA)).join();
+		Member member2 = memberWritePipeline.save(new Member("member2", 20, teamA)).join();
+		
+		List<CompletableFuture<Void>> writes = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			writes.add(memberWritePipeline.addAge(member1.getId(), 1));
+		}
+		writes.add(memberWritePipeline.updateAge(member2.getId(), 50));
+		writes.add(memberWritePipeline.addAge(member2.getId(), 1));
+		writes.add(memberWritePipeline.changeTeam(member2.getId(), teamA.getId()));
+		writes.add(memberWritePipeline.changeTeam(member2.getId(), teamB.getId()));
+		
+		CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).join();
+		
+		Member findMember1 = em.find(Member.class, member1.getId());
+		Member findMember2 = em.find(Member.class, member2.getId());
+		
+		Assertions.assertThat(findMember1.getAge()).isEqualTo(110);
+		Assertions.assertThat(findMember2.getAge()).isEqualTo(51);
+		Assertions.assertThat(findMember2.getTeam().getId()).isEqualTo(teamB.getId());
+	}
+	
+	// 없는 회원의 변경은 그 변경만 실패하고, 같은 묶음의 다른 변경은 커밋된다.
+	@Test
+	public void failedWriteDoesNotFailBatch() {
+		Member member = memberWritePipeline.save(new Member("member1", 10)).join();
+		
+		CompletableFuture<Void> bad = memberWritePipeline.updateAge(Long.MAX_VALUE, 1);
+		CompletableFuture<Void> good = memberWritePipeline.updateAge(member.getId(), 30);
+		CompletableFuture<Member> saved = memberWritePipeline.save(new Member("member2", 40));
+		
+		Assertions.assertThatThrownBy(bad::join).hasCauseInstanceOf(EntityNotFoundException.class);
+		good.join();
+		Member member2 = saved.join();
+		
+		Assertions.assertThat(em.find(Member.class, member.getId()).getAge()).isEqualTo(30);
+		Assertions.assertThat(em.find(Member.class, member2.getId()).getAge()).isEqualTo(40);
+	}
+	
+}
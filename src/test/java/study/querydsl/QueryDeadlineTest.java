@@ -0,0 +1,127 @@
+package study.querydsl;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.QueryDeadline;
+
+@SpringBootTest
+@Transactional
+@ActiveProfiles("test")
+class QueryDeadlineTest {
+
+	// 행마다 5ms 씩 잡아먹는 함수 : 1000건 전체 스캔이면 5초 이상 걸린다.
+	static final String SLOW_FUNCTION = "create alias if not exists SLOW_ONE as $$ "
+			+ "int slowOne(long id) throws Exception { Thread.sleep(5); return 1; } $$";
+	static final int MEMBER_COUNT = 1000;
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	MemberRepository memberRepository;
+
+	JPAQueryFactory queryFactory;
+
+	ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+	@BeforeEach
+	public void before() {
+		queryFactory = new JPAQueryFactory(em);
+
+		// DDL 은 H2 에서 바로 커밋되므로 데이터보다 먼저 만든다.
+		em.createNativeQuery(SLOW_FUNCTION).executeUpdate();
+
+		Team teamA = new Team("teamA");
+		em.persist(teamA);
+		for (int i = 0; i < MEMBER_COUNT; i++) {
+			em.persist(new Member("member" + i, i % 100, teamA));
+		}
+		em.flush();
+		em.clear();
+	}
+
+	@AfterEach
+	public void after() {
+		scheduler.shutdownNow();
+	}
+
+	@Test
+	public void searchWithinDeadline() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setUsername("member7");
+
+		List<MemberTeamDto> result = memberRepository.search(condition, QueryDeadline.after(5_000));
+
+		Assertions.assertThat(result).extracting("username").containsExactly("member7");
+	}
+
+	@Test
+	public void cancelledAtDeadline() {
+		QueryDeadline deadline = QueryDeadline.after(300);
+
+		long start = System.nanoTime();
+		Assertions.assertThatThrownBy(() -> deadline.execute(em, () -> deadline.apply(slowQuery()).fetch()))
+				.isInstanceOf(QueryTimeoutException.class);
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		// 끝까지 돌았다면 5초 이상
+		Assertions.assertThat(elapsedMillis).isLessThan(3_000);
+	}
+
+	// 클라이언트 연결이 끊긴 경우 : 마감 시각 전이라도 cancel() 로 실행 중인 쿼리가 취소된다.
+	@Test
+	public void cancelledByClient() {
+		QueryDeadline deadline = QueryDeadline.after(60_000);
+		scheduler.schedule(deadline::cancel, 300, TimeUnit.MILLISECONDS);
+
+		long start = System.nanoTime();
+		Assertions.assertThatThrownBy(() -> deadline.execute(em, () -> deadline.apply(slowQuery()).fetch()))
+				.isInstanceOf(QueryTimeoutException.class)
+				.hasMessageContaining("cancelled");
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		Assertions.assertThat(elapsedMillis).isLessThan(3_000);
+		Assertions.assertThat(deadline.isExpired()).isFalse();
+	}
+
+	@Test
+	public void expiredDeadlineDoesNotStartQuery() {
+		QueryDeadline deadline = QueryDeadline.after(0);
+
+		Assertions.assertThatThrownBy(() -> memberRepository.search(new MemberSearchCondition(), deadline))
+				.isInstanceOf(QueryTimeoutException.class);
+	}
+
+	private JPAQuery<Member> slowQuery() {
+		QMember m = QMember.member;
+		return queryFactory
+				.selectFrom(m)
+				.where(Expressions.numberTemplate(Integer.class, "function('SLOW_ONE', {0})", m.id).eq(1));
+	}
+
+}
@@ -0,0 +1,95 @@
+package study.querydsl;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.persistence.EntityManager;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import reactor.test.StepVerifier;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.ReactiveMemberRepository;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ReactiveMemberRepositoryTest {
+
+	@Autowired
+	ReactiveMemberRepository reactiveMemberRepository;
+	
+	@Autowired
+	EntityManager em;
+	
+	@Autowired
+	PlatformTransactionManager transactionManager;
+	
+	// R2DBC 는 별도 커넥션이므로 커밋된 데이터만 보인다.
+	@BeforeEach
+	public void before() {
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			Team teamA = new Team("teamA");
+			Team teamB = new Team("teamB");
+			em.persist(teamA);
+			em.persist(teamB);
+			
+			em.persist(new Member("member1", 10, teamA));
+			em.persist(new Member("member2", 20, teamA));
+			em.persist(new Member("member3", 30, teamB));
+			em.persist(new Member("member4", 40, teamB));
+		});
+	}
+	
+	@AfterEach
+	public void after() {
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			em.createQuery("delete from Member").executeUpdate();
+			em.createQuery("delete from Team").executeUpdate();
+		});
+	}
+	
+	@Test
+	public void search() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setAgeGoe(20);
+		condition.setAgeLoe(40);
+		condition.setTeamName("teamB");
+		
+		List<MemberTeamDto> result = reactiveMemberRepository.search(condition).collectList().block();
+		
+		Assertions.assertThat(result).extracting("username").containsExactly("member3", "member4");
+	}
+	
+	// 요청한 만큼만 내려오고, 요청이 없으면 더 내려오지 않으며, 중간에 취소할 수 있다.
+	@Test
+	public void limitedDemand() {
+		List<Long> requested = new CopyOnWriteArrayList<>();
+		
+		StepVerifier.create(reactiveMemberRepository.search(new MemberSearchCondition()).doOnRequest(requested::add), 0)
+				.expectSubscription()
+				.expectNoEvent(Duration.ofMillis(100))
+				.thenRequest(1)
+				.assertNext(dto -> Assertions.assertThat(dto.getUsername()).isEqualTo("member1"))
+				.expectNoEvent(Duration.ofMillis(100))
+				.thenRequest(2)
+				.expectNextCount(2)
+				.expectNoEvent(Duration.ofMillis(100))
+				.thenCancel()
+				.verify(Duration.ofSeconds(5));
+		
+		Assertions.assertThat(requested).containsExactly(1L, 2L);
+	}
+	
+}
@@ -0,0 +1,44 @@
+package study.querydsl;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+
+import study.querydsl.startup.SearchWarmup;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = {
+		"querydsl.warmup.enabled=true",
+		"querydsl.warmup.iterations=2",
+		"querydsl.warmup.threads=2"
+})
+@ActiveProfiles("test")
+class SearchWarmupTest {
+
+	@Autowired
+	SearchWarmup searchWarmup;
+	
+	@Autowired
+	ApplicationAvailability availability;
+	
+	@Autowired
+	TestRestTemplate restTemplate;
+	
+	// 컨텍스트가 뜬 시점에는 warm-up 이 끝나 있고, 그 뒤에야 readiness 가 열린다.
+	@Test
+	public void readyAfterWarmup() {
+		Assertions.assertThat(searchWarmup.isCompleted()).isTrue();
+		Assertions.assertThat(searchWarmup.health().getStatus()).isEqualTo(Status.UP);
+		Assertions.assertThat(availability.getReadinessState()).isEqualTo(ReadinessState.ACCEPTING_TRAFFIC);
+		Assertions.assertThat(restTemplate.getForEntity("/actuator/health/readiness", String.class).getStatusCode())
+				.isEqualTo(HttpStatus.OK);
+	}
+	
+}
@@ -0,0 +1,156 @@
+package study.querydsl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.jdbc.MemberDataVersion;
+import study.querydsl.repository.shard.MemberShard;
+import study.querydsl.repository.shard.MemberShards;
+import study.querydsl.repository.shard.ShardedMemberRepository;
+
+@SpringBootTest(properties = {
+		"querydsl.sharding.enabled=true",
+		"querydsl.sharding.urls=jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1,jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1,jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1"
+})
+@ActiveProfiles("test")
+class ShardedMemberRepositoryTest {
+
+	@Autowired
+	ShardedMemberRepository shardedMemberRepository;
+	
+	@Autowired
+	MemberShards memberShards;
+	
+	@Autowired
+	MemberDataVersion memberDataVersion;
+	
+	List<Member> members = new ArrayList<>();
+	
+	@BeforeEach
+	public void before() {
+		memberShards.all().forEach(shard -> shard.getTransactionTemplate().executeWithoutResult(status -> {
+			shard.getEm().createQuery("delete from Member").executeUpdate();
+			shard.getEm().createQuery("delete from Team").executeUpdate();
+		}));
+		
+		for (int i = 0; i < 6; i++) {
+			Team team = shardedMemberRepository.saveTeam(new Team("team" + i));
+			members.add(shardedMemberRepository.save(new Member("member" + i + "a", 10 + i, team)));
+			members.add(shardedMemberRepository.save(new Member("member" + i + "b", 20 + i, team)));
+		}
+	}
+	
+	// 회원은 소속 팀과 같은 샤드에 저장되고, id 로 샤드를 찾을 수 있다.
+	@Test
+	public void routeByTeam() {
+		for (Member member : members) {
+			MemberShard shard = memberShards.byId(member.getId());
+			
+			Assertions.assertThat(shard).isSameAs(memberShards.byId(member.getTeam().getId()));
+			Assertions.assertThat(shardedMemberRepository.findById(member.getId())).isPresent();
+		}
+		
+		long usedShards = memberShards.all().stream()
+				.filter(shard -> shard.getEm().createQuery("select count(m) from Member m", Long.class).getSingleResult() > 0)
+				.count();
+		Assertions.assertThat(usedShards).isGreaterThan(1);
+	}
+	
+	@Test
+	public void searchSingleShard() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setTeamName("team3");
+		
+		List<MemberTeamDto> result = shardedMemberRepository.search(condition);
+		
+		Assertions.assertThat(result).extracting("username").containsExactly("member3a", "member3b");
+	}
+	
+	@Test
+	public void searchScatterGather() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setAgeGoe(20);
+		
+		List<MemberTeamDto> result = shardedMemberRepository.search(condition);
+		
+		Assertions.assertThat(result).hasSize(6);
+		Assertions.assertThat(result).isSortedAccordingTo(Comparator.comparing(MemberTeamDto::getMemberId));
+	}
+	
+	@Test
+	public void reassignTeamAcrossShardsIsRejected() {
+		Member member = members.stream()
+				.filter(m -> memberShards.byId(m.getId()) != memberShards.byId(members.get(0).getTeam().getId()))
+				.findFirst()
+				.get();
+		Long teamId = members.get(0).getTeam().getId();
+		
+		Assertions.assertThatThrownBy(() -> shardedMemberRepository.reassignTeam(Arrays.asList(members.get(1).getId(), member.getId()), teamId))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining(String.valueOf(member.getId()));
+	}
+	
+	@Test
+	public void renameTeamAcrossShardsIsRejected() {
+		Long teamId = members.get(0).getTeam().getId();
+		String name = IntStream.range(0, 100)
+				.mapToObj(i -> "renamed" + i)
+				.filter(n -> memberShards.byTeamName(n) != memberShards.byId(teamId))
+				.findFirst()
+				.get();
+		
+		Assertions.assertThatThrownBy(() -> shardedMemberRepository.renameTeam(teamId, name))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+	
+	// 샤드 DataSource 도 p6spy 를 지나고(데이터 버전이 오른다), 샤드 스키마에도 삭제 트리거가 있다.
+	@Test
+	public void shardsShareDataSourceAndSchemaSetup() {
+		String version = memberDataVersion.current();
+		Member member = shardedMemberRepository.save(new Member("tracked", 50, members.get(0).getTeam()));
+		Assertions.assertThat(memberDataVersion.current()).isNotEqualTo(version);
+		
+		MemberShard shard = memberShards.byId(member.getId());
+		Long tombstones = shard.getTransactionTemplate().execute(status -> {
+			shard.getEm().createQuery("delete from Member m where m.id = :id")
+					.setParameter("id", member.getId())
+					.executeUpdate();
+			return shard.getEm().createQuery("select count(t) from MemberTombstone t where t.memberId = :id", Long.class)
+					.setParameter("id", member.getId())
+					.getSingleResult();
+		});
+		Assertions.assertThat(tombstones).isEqualTo(1);
+	}
+	
+	// 병렬 조회 스레드는 요청들이 나눠 쓴다. 동시에 들어온 요청이 서로를 막지 않아야 한다.
+	@Test
+	public void searchScatterGatherConcurrently() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setAgeGoe(20);
+		
+		List<CompletableFuture<List<MemberTeamDto>>> searches = IntStream.range(0, 8)
+				.mapToObj(i -> CompletableFuture.supplyAsync(() -> shardedMemberRepository.search(condition)))
+				.collect(Collectors.toList());
+		
+		for (CompletableFuture<List<MemberTeamDto>> search : searches) {
+			Assertions.assertThat(search.join()).hasSize(6);
+		}
+	}
+	
+}
@@ -0,0 +1,57 @@
+package study.querydsl;
+
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import study.querydsl.dto.SlowQueryDto;
+import study.querydsl.entity.Member;
+import study.querydsl.jdbc.SlowQueryLog;
+
+@SpringBootTest(properties = "querydsl.sql-log.slow-threshold-ms=0")
+@Transactional
+@ActiveProfiles("test")
+class SlowQueryLogTest {
+
+	@Autowired
+	EntityManager em;
+	
+	@Autowired
+	SlowQueryLog slowQueryLog;
+	
+	// 임계치 0ms : 모든 select 가 실행계획과 함께 남는다. 바인딩 값은 EXPLAIN 에만 쓰고 남기지 않는다.
+	@Test
+	void captureWithPlan() throws Exception {
+		em.createQuery("select m from Member m where m.username = :username", Member.class)
+			.setParameter("username", "slowMember")
+			.getResultList();
+		
+		SlowQueryDto captured = null;
+		for (int i = 0; i < 50 && captured == null; i++) {
+			Thread.sleep(100);
+			List<SlowQueryDto> entries = slowQueryLog.getEntries();
+			captured = entries.stream()
+					.filter(q -> q.getSql().contains("username=?"))
+					.findFirst()
+					.orElse(null);
+		}
+		
+		Assertions.assertThat(captured).isNotNull();
+		Assertions.assertThat(captured.getPlan()).isNotBlank();
+		Assertions.assertThat(slowQueryLog.getEntries()).extracting("sql").noneMatch(sql -> ((String) sql).contains("slowMember"));
+	}
+	
+	@Test
+	void capacityMustBePositive() {
+		Assertions.assertThatThrownBy(() -> new SlowQueryLog(null, 0)).isInstanceOf(IllegalArgumentException.class);
+		Assertions.assertThatThrownBy(() -> new SlowQueryLog(null, -1)).isInstanceOf(IllegalArgumentException.class);
+	}
+	
+}
@@ -0,0 +1,102 @@
+package study.querydsl;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.UsernameFilter;
+
+// 필터는 커밋된 데이터 기준이다.
+@SpringBootTest
+@ActiveProfiles("test")
+class UsernameFilterTest extends CommittedDataTest {
+
+	@Autowired
+	UsernameFilter usernameFilter;
+
+	@Autowired
+	MemberRepository memberRepository;
+
+	@Autowired
+	MemberJpaRepository memberJpaRepository;
+
+	@Autowired
+	MeterRegistry meterRegistry;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	public void before() {
+		inTransaction(status -> em.persist(new Member("filtered", 10)));
+		usernameFilter.rebuild();
+	}
+
+	@Test
+	public void absentUsernameSkipsQuery() {
+		double absent = count("absent");
+		double present = count("present");
+
+		Assertions.assertThat(memberRepository.findByUsername("no-such-user")).isEmpty();
+		Assertions.assertThat(memberJpaRepository.findByUsername("no-such-user")).isEmpty();
+		Assertions.assertThat(memberJpaRepository.findByUsername_Querydsl("no-such-user")).isEmpty();
+		Assertions.assertThat(count("absent") - absent).isEqualTo(3);
+
+		Assertions.assertThat(memberRepository.findByUsername("filtered")).extracting("age").containsExactly(10);
+		Assertions.assertThat(count("present") - present).isEqualTo(1);
+	}
+
+	@Test
+	public void insertedUsernameIsFoundWithoutRebuild() {
+		inTransaction(status -> em.persist(new Member("filtered-new", 20)));
+		Assertions.assertThat(memberRepository.findByUsername("filtered-new")).extracting("age").containsExactly(20);
+
+		// 쓰기 트랜잭션 안에서는 flush 전 회원도 찾는다.
+		inTransaction(status -> {
+			em.persist(new Member("filtered-pending", 30));
+			Assertions.assertThat(memberRepository.findByUsername("filtered-pending")).extracting("age").containsExactly(30);
+		});
+	}
+
+	// Hibernate 를 거치지 않고 (다른 인스턴스, JDBC) 넣은 username 은 poll 뒤에 찾는다.
+	@Test
+	public void polledUsernameIsFound() {
+		jdbcTemplate.update("insert into member (member_id, username, age) values (next value for member_seq, 'filtered-jdbc', 40)");
+		usernameFilter.poll();
+
+		Assertions.assertThat(memberRepository.findByUsername("filtered-jdbc")).extracting("age").containsExactly(40);
+	}
+
+	// poll 전이라도 요청 뒤에 끝난 poll 이 없으면 없다고 하지 않는다.
+	@Test
+	public void jdbcInsertedUsernameIsFoundBeforePoll() {
+		jdbcTemplate.update("insert into member (member_id, username, age) values (next value for member_seq, 'filtered-unpolled', 50)");
+
+		double absent = count("absent");
+		Assertions.assertThat(memberRepository.findByUsername("filtered-unpolled")).extracting("age").containsExactly(50);
+		Assertions.assertThat(count("absent") - absent).isZero();
+	}
+
+	@Test
+	public void rebuildDropsDeletedUsernames() {
+		inTransaction(status -> em.createQuery("delete from Member m where m.username = 'filtered'").executeUpdate());
+		usernameFilter.rebuild();
+
+		double absent = count("absent");
+		Assertions.assertThat(memberRepository.findByUsername("filtered")).isEmpty();
+		Assertions.assertThat(count("absent") - absent).isEqualTo(1);
+	}
+
+	private double count(String result) {
+		return meterRegistry.counter("member.username.filter", "result", result).count();
+	}
+
+}
@@ -0,0 +1,71 @@
+package study.querydsl.loadtest;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import org.HdrHistogram.Recorder;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * 고정 도착률(open model)로 요청을 발생시킨다.
+ * 지연시간은 실제 전송 시각이 아니라 "예정된" 전송 시각부터 측정하므로
+ * 서버가 밀려서 요청이 늦게 나가는 경우(coordinated omission)도 지연으로 잡힌다.
+ */
+public class FixedRateLoadGenerator {
+
+	private final RestTemplate restTemplate;
+	private final int ratePerSecond;
+	private final int threads;
+
+	public FixedRateLoadGenerator(RestTemplate restTemplate, int ratePerSecond, int threads) {
+		this.restTemplate = restTemplate;
+		this.ratePerSecond = ratePerSecond;
+		this.threads = threads;
+	}
+
+	public LoadTestReport run(Duration duration, Supplier<URI> requests) throws InterruptedException {
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		Recorder recorder = new Recorder(3);
+		AtomicLong errors = new AtomicLong();
+		
+		long intervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+		long start = System.nanoTime();
+		long end = start + duration.toNanos();
+		long sent = 0;
+		
+		while (true) {
+			long intendedStart = start + sent * intervalNanos;
+			if (intendedStart >= end) {
+				break;
+			}
+			
+			long wait = intendedStart - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(wait);
+			}
+			
+			URI uri = requests.get();
+			workers.execute(() -> {
+				try {
+					restTemplate.getForEntity(uri, byte[].class);
+				} catch (RestClientException e) {
+					errors.incrementAndGet();
+				}
+				recorder.recordValue(System.nanoTime() - intendedStart);
+			});
+			sent++;
+		}
+		
+		workers.shutdown();
+		workers.awaitTermination(1, TimeUnit.MINUTES);
+		
+		return new LoadTestReport(recorder.getIntervalHistogram(), sent, errors.get(), System.nanoTime() - start);
+	}
+}
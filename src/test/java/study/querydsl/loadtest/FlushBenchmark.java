@@ -0,0 +1,91 @@
+package study.querydsl.loadtest;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.engine.spi.SelfDirtinessTracker;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import study.querydsl.entity.Member;
+
+/**
+ * 관리 중인 엔티티가 많을 때의 flush 비용. bytecode enhancement(build.gradle) 적용 전후를 비교한다.
+ * 쓰기 트랜잭션 안에서 전체 회원을 로딩한 뒤 변경 없이 한 번, 1% 를 바꾸고 한 번 flush 한다.
+ *
+ * ./gradlew loadTest --tests '*FlushBenchmark'                  (enhanced)
+ * ./gradlew loadTest --tests '*FlushBenchmark' -Penhance=false  (스냅샷 비교)
+ */
+@Tag("loadtest")
+@SpringBootTest
+@ActiveProfiles("loadtest")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class FlushBenchmark {
+
+	private static final int ROUNDS = 5;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Autowired
+	EntityManager em;
+
+	@Value("${loadtest.seed.teams}")
+	int teams;
+
+	@Value("${loadtest.seed.members}")
+	int members;
+
+	@BeforeAll
+	void seed() {
+		new LoadTestSeeder(jdbcTemplate).seed(teams, members);
+	}
+
+	@Test
+	void flush() {
+		boolean enhanced = SelfDirtinessTracker.class.isAssignableFrom(Member.class);
+		for (int round = 0; round <= ROUNDS; round++) {
+			measure(round == 0 ? "warmup" : (enhanced ? "enhanced" : "snapshot") + " #" + round);
+		}
+	}
+
+	private void measure(String name) {
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			// read-only 로 읽으면 dirty checking 을 하지 않으므로 hint 없이 읽는다.
+			List<Member> loaded = em.createQuery("select m from Member m", Member.class).getResultList();
+
+			long cleanStart = System.nanoTime();
+			em.flush();
+			long cleanMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - cleanStart);
+
+			for (int i = 0; i < loaded.size(); i += 100) {
+				loaded.get(i).setAge(loaded.get(i).getAge() + 1);
+			}
+			long dirtyStart = System.nanoTime();
+			em.flush();
+			long dirtyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - dirtyStart);
+
+			System.out.printf("===> [%s] entities=%d flush(clean)=%.1fms flush(1%% dirty)=%.1fms%n",
+					name, loaded.size(), cleanMicros / 1000.0, dirtyMicros / 1000.0);
+
+			// 라운드마다 같은 데이터로 재도록 커밋하지 않는다.
+			status.setRollbackOnly();
+			em.clear();
+		});
+	}
+
+}
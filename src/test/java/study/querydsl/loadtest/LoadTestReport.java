@@ -0,0 +1,56 @@
+package study.querydsl.loadtest;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+
+import lombok.Getter;
+
+/**
+ * 부하테스트 결과. 지연시간 단위는 ns 로 기록하고 ms 로 출력한다.
+ */
+@Getter
+public class LoadTestReport {
+
+	private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+	private final Histogram histogram;
+	private final long requests;
+	private final long errors;
+	private final long elapsedNanos;
+
+	public LoadTestReport(Histogram histogram, long requests, long errors, long elapsedNanos) {
+		this.histogram = histogram;
+		this.requests = requests;
+		this.errors = errors;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	public double throughput() {
+		return requests / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+	}
+
+	public double percentileMillis(double percentile) {
+		return histogram.getValueAtPercentile(percentile) / NANOS_PER_MILLI;
+	}
+
+	public void print(String name, PrintStream out) {
+		out.printf("===> [%s] requests=%d errors=%d throughput=%.1f req/s p50=%.2fms p99=%.2fms p999=%.2fms max=%.2fms%n",
+				name, requests, errors, throughput(),
+				percentileMillis(50.0), percentileMillis(99.0), percentileMillis(99.9),
+				histogram.getMaxValue() / NANOS_PER_MILLI);
+	}
+
+	/**
+	 * 릴리즈 간 비교용으로 HdrHistogram percentile 분포(.hgrm)를 남긴다.
+	 */
+	public void writeDistribution(Path file) throws FileNotFoundException {
+		file.toFile().getParentFile().mkdirs();
+		try (PrintStream out = new PrintStream(file.toFile())) {
+			histogram.outputPercentileDistribution(out, NANOS_PER_MILLI);
+		}
+	}
+}
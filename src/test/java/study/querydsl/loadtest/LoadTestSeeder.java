@@ -0,0 +1,73 @@
+package study.querydsl.loadtest;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * 부하테스트용 데이터 적재.
+ * InitMember(100건, 건당 persist) 대신 JDBC batch insert 로 원하는 규모만큼 채운다.
+ * member{n} 은 team{n % teamCount} 에 속하고, 나이는 n % 100 이다.
+ */
+public class LoadTestSeeder {
+
+	private static final int BATCH_SIZE = 1_000;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	public LoadTestSeeder(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	public static String username(int n) {
+		return "member" + n;
+	}
+
+	public static String teamName(int n) {
+		return "team" + n;
+	}
+
+	public void seed(int teamCount, int memberCount) {
+		insertInBatches("insert into team (team_id, name) values (?, ?)", teamCount, (ps, n) -> {
+			ps.setLong(1, n + 1);
+			ps.setString(2, teamName(n));
+		});
+		insertInBatches("insert into member (member_id, username, age, team_id, team_name) values (?, ?, ?, ?, ?)", memberCount, (ps, n) -> {
+			ps.setLong(1, n + 1);
+			ps.setString(2, username(n));
+			ps.setInt(3, n % 100);
+			ps.setLong(4, n % teamCount + 1);
+			ps.setString(5, teamName(n % teamCount));
+		});
+		
+		// id 를 직접 넣었으므로 이후 JPA insert 와 겹치지 않게 시퀀스를 뒤로 민다.
+		jdbcTemplate.execute("alter sequence team_seq restart with " + (teamCount + 1));
+		jdbcTemplate.execute("alter sequence member_seq restart with " + (memberCount + 1));
+	}
+
+	private void insertInBatches(String sql, int count, RowSetter rowSetter) {
+		for (int from = 0; from < count; from += BATCH_SIZE) {
+			int offset = from;
+			int size = Math.min(BATCH_SIZE, count - from);
+			
+			jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+				@Override
+				public void setValues(PreparedStatement ps, int i) throws SQLException {
+					rowSetter.setValues(ps, offset + i);
+				}
+
+				@Override
+				public int getBatchSize() {
+					return size;
+				}
+			});
+		}
+	}
+
+	@FunctionalInterface
+	private interface RowSetter {
+		void setValues(PreparedStatement ps, int n) throws SQLException;
+	}
+}
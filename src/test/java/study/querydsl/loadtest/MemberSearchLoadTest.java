@@ -0,0 +1,109 @@
+package study.querydsl.loadtest;
+
+import java.net.URI;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * /v1/members end-to-end 부하테스트 (controller, Jackson, connection pool 포함).
+ * 일반 test 에서는 제외되고 ./gradlew loadTest 로 실행한다.
+ * 규모와 부하는 -Dloadtest.* 로 조정한다. (application-loadtest.yml 참고)
+ */
+@Tag("loadtest")
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("loadtest")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class MemberSearchLoadTest {
+
+	static {
+		// HttpURLConnection keep-alive 풀 크기 (기본 5)
+		System.setProperty("http.maxConnections", "256");
+	}
+
+	@LocalServerPort
+	int port;
+	
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+	
+	@Value("${loadtest.seed.teams}")
+	int teams;
+	
+	@Value("${loadtest.seed.members}")
+	int members;
+	
+	@Value("${loadtest.rate}")
+	int rate;
+	
+	@Value("${loadtest.threads}")
+	int threads;
+	
+	@Value("${loadtest.warmup-seconds}")
+	int warmupSeconds;
+	
+	@Value("${loadtest.duration-seconds}")
+	int durationSeconds;
+	
+	@BeforeAll
+	void seed() {
+		new LoadTestSeeder(jdbcTemplate).seed(teams, members);
+	}
+	
+	@Test
+	void searchMembers() throws Exception {
+		FixedRateLoadGenerator generator = new FixedRateLoadGenerator(new RestTemplate(), rate, threads);
+		
+		generator.run(Duration.ofSeconds(warmupSeconds), this::nextSearch);
+		LoadTestReport report = generator.run(Duration.ofSeconds(durationSeconds), this::nextSearch);
+		
+		report.print("v1-members", System.out);
+		report.writeDistribution(Paths.get("build", "loadtest", "v1-members.hgrm"));
+		
+		Assertions.assertThat(report.getErrors()).isZero();
+	}
+	
+	/**
+	 * 조건 조합 비율
+	 * username 40%, teamName 20%, teamName + 나이범위 20%, 나이범위 20%
+	 */
+	private URI nextSearch() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl("http://localhost:" + port)
+				.path("/v1/members");
+		
+		int shape = random.nextInt(100);
+		int age = random.nextInt(95);
+		
+		if (shape < 40) {
+			builder.queryParam("username", LoadTestSeeder.username(random.nextInt(members)));
+		} else if (shape < 60) {
+			builder.queryParam("teamName", LoadTestSeeder.teamName(random.nextInt(teams)));
+		} else if (shape < 80) {
+			builder.queryParam("teamName", LoadTestSeeder.teamName(random.nextInt(teams)))
+					.queryParam("ageGoe", age)
+					.queryParam("ageLoe", age + 5);
+		} else {
+			builder.queryParam("ageGoe", age)
+					.queryParam("ageLoe", age);
+		}
+		
+		return builder.build().toUri();
+	}
+	
+}
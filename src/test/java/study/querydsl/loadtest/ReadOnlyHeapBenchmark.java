@@ -0,0 +1,115 @@
+package study.querydsl.loadtest;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import study.querydsl.entity.Member;
+import study.querydsl.jdbc.TableStatistics;
+import study.querydsl.repository.MemberCache;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.ReadOnlyQueries;
+import study.querydsl.repository.UsernameFilter;
+
+/**
+ * 조회 전용 모드(ReadOnlyQueries) on/off 비교.
+ * 전체 회원을 엔티티로 로딩한 뒤 영속성 컨텍스트가 살아있는 상태의 heap 증가량과 flush 시간을 잰다.
+ * 둘 다 같은 read-only 트랜잭션에서 재고, 모드 스위치만 다르다.
+ *
+ * ./gradlew loadTest --tests '*ReadOnlyHeapBenchmark' -Dloadtest.seed.members=200000
+ */
+@Tag("loadtest")
+@SpringBootTest
+@ActiveProfiles("loadtest")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ReadOnlyHeapBenchmark {
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	TableStatistics tableStatistics;
+
+	@Autowired
+	MemberCache memberCache;
+
+	@Autowired
+	UsernameFilter usernameFilter;
+
+	@Value("${loadtest.seed.teams}")
+	int teams;
+
+	@Value("${loadtest.seed.members}")
+	int members;
+
+	@BeforeAll
+	void seed() {
+		new LoadTestSeeder(jdbcTemplate).seed(teams, members);
+	}
+
+	@Test
+	void compareHeap() {
+		MemberJpaRepository managed = new MemberJpaRepository(em, new ReadOnlyQueries(false), tableStatistics, memberCache, usernameFilter);
+		MemberJpaRepository readOnly = new MemberJpaRepository(em, new ReadOnlyQueries(true), tableStatistics, memberCache, usernameFilter);
+
+		// warmup
+		measure("warmup", managed);
+		measure("warmup", readOnly);
+
+		measure("managed", managed);
+		measure("read-only", readOnly);
+	}
+
+	private void measure(String name, MemberJpaRepository repository) {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+		transaction.setReadOnly(true);
+		transaction.executeWithoutResult(status -> {
+			long before = usedHeapAfterGc(memory);
+
+			List<Member> loaded = repository.findAll_Querydsl();
+			long after = usedHeapAfterGc(memory);
+
+			long flushStart = System.nanoTime();
+			em.flush();
+			long flushMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - flushStart);
+
+			System.out.printf("===> [%s] entities=%d heap=%.1fMB (%d bytes/entity) flush=%dms%n",
+					name, loaded.size(), (after - before) / (1024.0 * 1024.0),
+					(after - before) / Math.max(1, loaded.size()), flushMillis);
+
+			// 비교 대상끼리 같은 조건이 되도록 결과는 커밋하지 않는다.
+			status.setRollbackOnly();
+		});
+	}
+
+	private static long usedHeapAfterGc(MemoryMXBean memory) {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+}
@@ -0,0 +1,109 @@
+package study.querydsl.loadtest;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.MemberTeamProjection;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.QTeam;
+
+/**
+ * 조건 없는 검색 결과(List<MemberTeamDto>) 가 붙잡고 있는 heap 비교.
+ * QMemberTeamDto(행마다 새 teamName / teamId) vs MemberTeamProjection(쿼리 안에서 공유)
+ *
+ * team id 가 Long 캐시(-128~127) 안이면 teamId 는 원래 공유되므로, teamId 차이까지 보려면 팀 수를 늘린다.
+ *
+ * ./gradlew loadTest --tests '*ResultHeapBenchmark' -Dloadtest.seed.members=1000000 -Dloadtest.seed.teams=1000
+ */
+@Tag("loadtest")
+@SpringBootTest
+@ActiveProfiles("loadtest")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ResultHeapBenchmark {
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Autowired
+	EntityManager em;
+
+	@Value("${loadtest.seed.teams}")
+	int teams;
+
+	@Value("${loadtest.seed.members}")
+	int members;
+
+	TransactionTemplate readOnly;
+
+	@BeforeAll
+	void seed() {
+		new LoadTestSeeder(jdbcTemplate).seed(teams, members);
+		readOnly = new TransactionTemplate(transactionManager);
+		readOnly.setReadOnly(true);
+	}
+
+	@Test
+	void compareRetainedHeap() {
+		QMember m = QMember.member;
+		QTeam t = QTeam.team;
+
+		Supplier<FactoryExpression<MemberTeamDto>> plain = () -> new QMemberTeamDto(m.id, m.username, m.age, t.id, t.name);
+		Supplier<FactoryExpression<MemberTeamDto>> canonical = () -> new MemberTeamProjection(m.id, m.username, m.age, t.id, t.name);
+
+		// warmup
+		measure("warmup", plain);
+		measure("warmup", canonical);
+
+		measure("per-row values", plain);
+		measure("canonical values", canonical);
+	}
+
+	private void measure(String name, Supplier<FactoryExpression<MemberTeamDto>> projection) {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		QMember m = QMember.member;
+		QTeam t = QTeam.team;
+
+		long before = usedHeapAfterGc(memory);
+		List<MemberTeamDto> result = readOnly.execute(status -> new JPAQueryFactory(em)
+				.select(projection.get())
+				.from(m)
+				.leftJoin(m.team, t)
+				.fetch());
+		long after = usedHeapAfterGc(memory);
+
+		System.out.printf("===> [%s] rows=%d retained=%.1fMB (%d bytes/row)%n",
+				name, result.size(), (after - before) / (1024.0 * 1024.0), (after - before) / Math.max(1, result.size()));
+	}
+
+	private static long usedHeapAfterGc(MemoryMXBean memory) {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+}
@@ -0,0 +1,130 @@
+package study.querydsl.loadtest;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import org.HdrHistogram.Histogram;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.sql.MemberSqlRepository;
+
+/**
+ * 같은 조건 목록으로 JPA(Querydsl JPA) 와 querydsl-sql 검색 경로를 번갈아 돌려 비교한다.
+ * HTTP 없이 저장소만 호출하므로 순수하게 조회 경로의 CPU / 할당 차이가 드러난다.
+ */
+@Tag("loadtest")
+@SpringBootTest
+@ActiveProfiles("loadtest")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class SearchPathBenchmark {
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Autowired
+	MemberRepository memberRepository;
+
+	@Autowired
+	MemberSqlRepository memberSqlRepository;
+
+	@Value("${loadtest.seed.teams}")
+	int teams;
+
+	@Value("${loadtest.seed.members}")
+	int members;
+
+	@Value("${loadtest.search-path.iterations:20000}")
+	int iterations;
+
+	TransactionTemplate readOnly;
+
+	@BeforeAll
+	void seed() {
+		new LoadTestSeeder(jdbcTemplate).seed(teams, members);
+		readOnly = new TransactionTemplate(transactionManager);
+		readOnly.setReadOnly(true);
+	}
+
+	@Test
+	void compareSearchPaths() throws Exception {
+		List<MemberSearchCondition> conditions = conditions(iterations);
+
+		// 같은 조건이면 두 경로의 결과가 같아야 비교가 의미 있다.
+		for (MemberSearchCondition condition : conditions.subList(0, 100)) {
+			Assertions.assertThat(readOnly.execute(status -> memberSqlRepository.search(condition)))
+					.containsExactlyInAnyOrderElementsOf(readOnly.execute(status -> memberRepository.search(condition)));
+		}
+
+		// warmup 후 측정
+		run(conditions, memberRepository::search);
+		run(conditions, memberSqlRepository::search);
+
+		LoadTestReport jpa = run(conditions, memberRepository::search);
+		LoadTestReport sql = run(conditions, memberSqlRepository::search);
+
+		jpa.print("search-jpa", System.out);
+		sql.print("search-sql", System.out);
+		jpa.writeDistribution(Paths.get("build", "loadtest", "search-jpa.hgrm"));
+		sql.writeDistribution(Paths.get("build", "loadtest", "search-sql.hgrm"));
+	}
+
+	private LoadTestReport run(List<MemberSearchCondition> conditions, Function<MemberSearchCondition, List<MemberTeamDto>> search) {
+		Histogram histogram = new Histogram(3);
+		long start = System.nanoTime();
+		for (MemberSearchCondition condition : conditions) {
+			long begin = System.nanoTime();
+			readOnly.execute(status -> search.apply(condition));
+			histogram.recordValue(System.nanoTime() - begin);
+		}
+		return new LoadTestReport(histogram, conditions.size(), 0, System.nanoTime() - start);
+	}
+
+	/**
+	 * MemberSearchLoadTest 와 같은 조건 비율. 두 경로가 같은 순서로 돌도록 seed 를 고정한다.
+	 */
+	private List<MemberSearchCondition> conditions(int count) {
+		Random random = new Random(42);
+		List<MemberSearchCondition> conditions = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			MemberSearchCondition condition = new MemberSearchCondition();
+			int shape = random.nextInt(100);
+			int age = random.nextInt(95);
+
+			if (shape < 40) {
+				condition.setUsername(LoadTestSeeder.username(random.nextInt(members)));
+			} else if (shape < 60) {
+				condition.setTeamName(LoadTestSeeder.teamName(random.nextInt(teams)));
+			} else if (shape < 80) {
+				condition.setTeamName(LoadTestSeeder.teamName(random.nextInt(teams)));
+				condition.setAgeGoe(age);
+				condition.setAgeLoe(age + 5);
+			} else {
+				condition.setAgeGoe(age);
+				condition.setAgeLoe(age);
+			}
+			conditions.add(condition);
+		}
+		return conditions;
+	}
+
+}
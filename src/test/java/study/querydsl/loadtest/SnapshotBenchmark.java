@@ -0,0 +1,79 @@
+package study.querydsl.loadtest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import study.querydsl.jdbc.MemberSnapshot;
+
+/**
+ * 스냅샷 내보내기 / 복원 처리량. (study.querydsl.jdbc.MemberSnapshot)
+ *
+ * ./gradlew loadTest --tests '*SnapshotBenchmark' -Dloadtest.seed.members=1000000
+ */
+@Tag("loadtest")
+@SpringBootTest
+@ActiveProfiles("loadtest")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class SnapshotBenchmark {
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	MemberSnapshot memberSnapshot;
+
+	@Value("${loadtest.seed.teams}")
+	int teams;
+
+	@Value("${loadtest.seed.members}")
+	int members;
+
+	Path file;
+
+	@BeforeAll
+	void seed() throws Exception {
+		new LoadTestSeeder(jdbcTemplate).seed(teams, members);
+		file = Files.createTempFile("loadtest", ".snap");
+	}
+
+	@AfterAll
+	void cleanup() throws Exception {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	void exportAndRestore() {
+		long start = System.nanoTime();
+		long bytes = memberSnapshot.export(file);
+		report("export", bytes, System.nanoTime() - start);
+
+		jdbcTemplate.execute("delete from member");
+		jdbcTemplate.execute("delete from member_tombstone");
+		jdbcTemplate.execute("delete from team");
+
+		start = System.nanoTime();
+		long restored = memberSnapshot.restore(file);
+		report("restore", bytes, System.nanoTime() - start);
+		System.out.printf("===> restored %d members%n", restored);
+	}
+
+	private void report(String name, long bytes, long nanos) {
+		double seconds = nanos / 1e9;
+		System.out.printf("===> [%s] %d members, %.1fMB in %dms (%.1fMB/s, %.0f rows/s)%n",
+				name, members, bytes / (1024.0 * 1024.0), TimeUnit.NANOSECONDS.toMillis(nanos),
+				bytes / (1024.0 * 1024.0) / seconds, members / seconds);
+	}
+
+}
@@ -0,0 +1,125 @@
+package study.querydsl.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 기동 시간 측정 : 프로세스 시작부터 /v1/members 첫 200 응답까지.
+ * 기본 / faststart / faststart + AppCDS 를 각각 별도 JVM 으로 띄운다.
+ * CDS 는 ./gradlew cdsArchive 로 아카이브를 먼저 만들어 두어야 측정된다.
+ */
+@Tag("loadtest")
+class StartupTimeBenchmark {
+
+	static final long TIMEOUT_MILLIS = 60_000;
+
+	String classpath = System.getProperty("loadtest.boot.classpath");
+	String cdsArchive = System.getProperty("loadtest.boot.cds-archive");
+	int runs = Integer.getInteger("loadtest.startup.runs", 3);
+
+	@Test
+	void timeToFirstResponse() throws Exception {
+		Assumptions.assumeTrue(classpath != null, "loadtest.boot.classpath 가 없음 (./gradlew loadTest 로 실행)");
+
+		report("default", measure("default", "local"));
+		report("faststart", measure("faststart", "local,faststart"));
+
+		if (cdsArchive != null && new File(cdsArchive).exists()) {
+			report("faststart+cds", measure("faststart-cds", "local,faststart",
+					"-XX:SharedArchiveFile=" + cdsArchive, "-Xshare:auto"));
+		} else {
+			System.out.println("[startup] faststart+cds skipped (run ./gradlew cdsArchive first)");
+		}
+	}
+
+	private long[] measure(String name, String profiles, String... jvmArgs) throws Exception {
+		long[] millis = new long[runs];
+		for (int i = 0; i < runs; i++) {
+			millis[i] = startOnce(name + "-" + i, profiles, jvmArgs);
+		}
+		return millis;
+	}
+
+	private long startOnce(String name, String profiles, String... jvmArgs) throws Exception {
+		int port = freePort();
+
+		List<String> command = new ArrayList<>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		command.addAll(Arrays.asList(jvmArgs));
+		command.add("-cp");
+		command.add(classpath);
+		command.add("study.querydsl.QuerydslApplication");
+		command.add("--spring.profiles.active=" + profiles);
+		command.add("--server.port=" + port);
+		command.add("--spring.datasource.url=jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+		command.add("--querydsl.r2dbc.url=r2dbc:h2:mem:///" + name + "?options=DB_CLOSE_DELAY=-1");
+
+		Path logDir = Paths.get("build", "loadtest", "startup");
+		Files.createDirectories(logDir);
+
+		long start = System.nanoTime();
+		Process process = new ProcessBuilder(command)
+				.redirectErrorStream(true)
+				.redirectOutput(logDir.resolve(name + ".log").toFile())
+				.start();
+		try {
+			URL url = new URL("http://localhost:" + port + "/v1/members");
+			while (!isOk(url)) {
+				Assertions.assertThat(process.isAlive()).as(name + " exited, see " + logDir).isTrue();
+				Assertions.assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+						.as(name + " did not answer in time").isLessThan(TIMEOUT_MILLIS);
+				Thread.sleep(10);
+			}
+			return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		} finally {
+			process.destroy();
+			if (!process.waitFor(10, TimeUnit.SECONDS)) {
+				process.destroyForcibly();
+			}
+		}
+	}
+
+	private boolean isOk(URL url) {
+		try {
+			HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+			connection.setConnectTimeout(100);
+			connection.setReadTimeout(5_000);
+			try {
+				return connection.getResponseCode() == 200;
+			} finally {
+				connection.disconnect();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private void report(String variant, long[] millis) {
+		long[] sorted = millis.clone();
+		Arrays.sort(sorted);
+		System.out.printf("[startup] %-14s runs=%s median=%dms min=%dms max=%dms%n",
+				variant, Arrays.toString(millis), sorted[sorted.length / 2], sorted[0], sorted[sorted.length - 1]);
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+}